@@ -0,0 +1,56 @@
+package org.example;
+
+// 基准测试共用的输入数据
+final class BenchmarkData {
+
+    static final String LOGIN_FORM = """
+            ```java
+            import javafx.application.Application;
+            import javafx.geometry.Insets;
+            import javafx.scene.Scene;
+            import javafx.scene.control.*;
+            import javafx.scene.layout.GridPane;
+            import javafx.stage.Stage;
+
+            public class LoginForm extends Application{
+                @Override
+                public void start(Stage stage){
+                    GridPane grid=new GridPane();
+                    grid.setPadding(new Insets(20));
+                    grid.setHgap(10);grid.setVgap(10);
+                    TextField user=new TextField();//用户名
+                    PasswordField pass=new PasswordField();
+                    Button login=new Button("登录");
+                    Label message=new Label();
+                    login.setOnAction(e->{
+                        if(user.getText().isEmpty()||pass.getText().isEmpty()){message.setText("请输入用户名和密码");}
+                        else{message.setText("欢迎, "+user.getText());}
+                    });
+                    grid.add(new Label("用户名:"),0,0);grid.add(user,1,0);
+                    grid.add(new Label("密码:"),0,1);grid.add(pass,1,1);
+                    grid.add(login,1,2);grid.add(message,1,3);
+                    stage.setTitle("登录");
+                    stage.setScene(new Scene(grid,320,200));
+                    stage.show();
+                }
+                public static void main(String[] args){launch(args);}
+            }
+            ```
+            """;
+
+    static final String BROKEN_FORM = LOGIN_FORM.replace("grid.add(login,1,2);", "grid.add(login,1,2)");
+
+    static final String FRAME = """
+            {"header":{"code":0,"message":"Success","sid":"cht000b8a3c@dx18b6f3f6c0fb8f2540","status":1},\
+            "payload":{"choices":{"status":1,"seq":3,"text":[{"content":"        Button login = new Button(\\"登录\\");\\n        login.setOnAction(e -> {\\n","role":"assistant","index":0}]}}}
+            """.trim();
+
+    static final String PROMPT = PromptBuilder.buildPrompt("包含用户名、密码输入框和登录按钮的登录界面，登录成功后显示欢迎信息");
+
+    private BenchmarkData() {
+    }
+
+    static String repeat(String code, int times) {
+        return code.repeat(times);
+    }
+}
@@ -0,0 +1,34 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// SparkClient.compileAndValidate：编译通过和编译失败两种情况
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+
+    private String valid;
+    private String broken;
+
+    @Setup
+    public void setUp() {
+        valid = SparkClient.stripCodeFences(BenchmarkData.LOGIN_FORM);
+        broken = SparkClient.stripCodeFences(BenchmarkData.BROKEN_FORM);
+    }
+
+    @Benchmark
+    public String compileValid() {
+        return SparkClient.compileAndValidate(valid);
+    }
+
+    @Benchmark
+    public String compileBroken() {
+        return SparkClient.compileAndValidate(broken);
+    }
+}
@@ -0,0 +1,34 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// UIController.formatJavaCode 在不同输入规模下的耗时
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String code;
+
+    @Setup
+    public void setUp() {
+        code = switch (size) {
+            case "small" -> BenchmarkData.LOGIN_FORM;
+            case "medium" -> BenchmarkData.repeat(BenchmarkData.LOGIN_FORM, 20);
+            default -> BenchmarkData.repeat(BenchmarkData.LOGIN_FORM, 500);
+        };
+    }
+
+    @Benchmark
+    public String formatJavaCode() {
+        return UIController.formatJavaCode(code);
+    }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// 请求构建、鉴权签名和响应帧解析：每次生成都会走到的热路径
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+    private static final String HOST_URL = "https://spark-api.xf-yun.com/v1/x1";
+    private static final String API_KEY = "00000000000000000000000000000000";
+    private static final String API_SECRET = "MDAwMDAwMDAwMDAwMDAwMDAwMDAwMDAw";
+
+    private final AuthSigner signer = new AuthSigner(HOST_URL, API_KEY, API_SECRET);
+    private final FrameDecoder decoder = new FrameDecoder();
+    private long second = 1_700_000_000L;
+
+    @Benchmark
+    public String buildRequest() {
+        return SparkClient.buildRequest(BenchmarkData.PROMPT);
+    }
+
+    // 冷路径：每次新建签名器
+    @Benchmark
+    public String getAuthUrl() {
+        return SparkClient.getAuthUrl(HOST_URL, API_KEY, API_SECRET);
+    }
+
+    // 每次都重新签名（时间不同），复用 HMAC 和解析好的地址
+    @Benchmark
+    public String signFresh() {
+        return signer.sign(second++);
+    }
+
+    // 热路径：同一秒内复用签名结果
+    @Benchmark
+    public String signCached() {
+        return signer.sign();
+    }
+
+    // 每帧新建解码器
+    @Benchmark
+    public SparkClient.Frame parseFrame() {
+        return SparkClient.parseFrame(BenchmarkData.FRAME);
+    }
+
+    // 对照：基线 onMessage 中用 fastjson 解析整帧再逐层取字段的做法
+    @Benchmark
+    public Object[] parseFrameFastjson() {
+        JSONObject json = JSON.parseObject(BenchmarkData.FRAME);
+        JSONObject header = json.getJSONObject("header");
+        JSONArray texts = json.getJSONObject("payload").getJSONObject("choices").getJSONArray("text");
+        String content = texts != null && !texts.isEmpty() ? texts.getJSONObject(0).getString("content") : null;
+        return new Object[]{header.getIntValue("code"), header.getIntValue("status"), content};
+    }
+
+    // 连接内复用解码器
+    @Benchmark
+    public SparkClient.Frame decodeFrame() {
+        return decoder.decode(BenchmarkData.FRAME);
+    }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import okhttp3.HttpUrl;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Objects;
+
+// 星火鉴权 URL 签名器：主机地址只解析一次，HMAC 按线程复用，签名结果在同一秒内直接复用
+// （date 参数精确到秒，同一秒内签出的 URL 完全相同）。可被多个线程并发调用
+public final class AuthSigner {
+
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final String apiKey;
+    private final String host;
+    private final String requestLine;
+    private final HttpUrl baseUrl;
+    private final ThreadLocal<Mac> mac;
+
+    private record Signed(long epochSecond, String url) {
+    }
+
+    private volatile Signed cached;
+
+    public AuthSigner(String hostUrl, String apiKey, String apiSecret) {
+        URL url;
+        try {
+            url = new URL(hostUrl);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("无效的星火地址: " + hostUrl, e);
+        }
+        this.apiKey = apiKey;
+        this.host = url.getHost();
+        this.requestLine = "GET " + url.getPath() + " HTTP/1.1";
+        this.baseUrl = Objects.requireNonNull(HttpUrl.parse(url.getProtocol() + "://" + url.getAuthority() + url.getPath()));
+
+        // 初始化一次原型，之后每个线程克隆一份，避免重复查找 Provider 和初始化密钥
+        Mac prototype = newMac(apiSecret);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                return (Mac) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                return newMac(apiSecret);
+            }
+        });
+    }
+
+    // 返回当前时刻的鉴权 URL
+    public String sign() {
+        long now = System.currentTimeMillis() / 1000;
+        Signed signed = cached;
+        if (signed != null && signed.epochSecond() == now) {
+            return signed.url();
+        }
+        String url = sign(now);
+        cached = new Signed(now, url);
+        return url;
+    }
+
+    // 按指定时刻签名，不经过缓存
+    String sign(long epochSecond) {
+        String date = DATE_FORMAT.format(Instant.ofEpochSecond(epochSecond));
+        String origin = "host: " + host + "\ndate: " + date + "\n" + requestLine;
+
+        Mac hmac = mac.get();
+        String signature = Base64.getEncoder().encodeToString(hmac.doFinal(origin.getBytes(StandardCharsets.UTF_8)));
+
+        String auth = "api_key=\"" + apiKey + "\", algorithm=\"hmac-sha256\", " +
+                "headers=\"host date request-line\", signature=\"" + signature + "\"";
+
+        return baseUrl.newBuilder()
+                .addQueryParameter("authorization",
+                        Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8)))
+                .addQueryParameter("date", date)
+                .addQueryParameter("host", host)
+                .build()
+                .toString();
+    }
+
+    private static Mac newMac(String apiSecret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("JDK 缺少 " + ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.example;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 无界面的批量生成入口：从 JSONL 读取 UI 描述，按并发上限和速率限制并行生成，结果逐条写入输出 JSONL。
+//
+// 用法：java org.example.BatchMain --input in.jsonl --output out.jsonl [--concurrency 8] [--rate 2] [--mock]
+// 输入每行形如 {"id": "login", "description": "包含用户名、密码和登录按钮的界面"}，id 缺省时使用行号。
+// 无法解析或缺少 description 的行不会中断整批任务，输出中对应一条带 line 和 error 的记录
+public class BatchMain {
+
+    public static void main(String[] args) throws Exception {
+        Path input = null;
+        Path output = null;
+        int concurrency = 8;
+        double rate = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean takesValue = switch (arg) {
+                case "--input", "--output", "--concurrency", "--rate" -> true;
+                default -> false;
+            };
+            if (takesValue && i + 1 >= args.length) {
+                System.out.println("无效参数: " + arg + " 缺少取值");
+                printUsage();
+                return;
+            }
+            try {
+                switch (arg) {
+                    case "--input" -> input = Paths.get(args[++i]);
+                    case "--output" -> output = Paths.get(args[++i]);
+                    case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                    case "--rate" -> rate = Double.parseDouble(args[++i]);
+                    case "--mock" -> System.setProperty("spark.backend", "mock");
+                    default -> {
+                        System.out.println("未知参数: " + arg);
+                        printUsage();
+                        return;
+                    }
+                }
+            } catch (NumberFormatException | InvalidPathException e) {
+                System.out.println("无效参数: " + arg + " " + args[i]);
+                printUsage();
+                return;
+            }
+        }
+        // 并发为 0 时第一次 acquire 永远拿不到许可；速率为 0 表示不限速
+        if (concurrency < 1) {
+            System.out.println("无效参数: --concurrency 必须至少为 1");
+            printUsage();
+            return;
+        }
+        if (!(rate >= 0) || Double.isInfinite(rate)) {
+            System.out.println("无效参数: --rate 必须是不小于 0 的有限数");
+            printUsage();
+            return;
+        }
+        if (input == null || output == null) {
+            printUsage();
+            return;
+        }
+
+        CodeGenerationBackend backend = CodeGenerationBackend.create();
+        GenerationPipeline pipeline = new GenerationPipeline(backend);
+        MetricsExporter metrics = MetricsExporter.start();
+        Prewarmer.start();
+        try {
+            run(pipeline, input, output, concurrency, new RateLimiter(rate));
+        } finally {
+            pipeline.shutdown();
+            backend.shutdown();
+            CompilerService.getDefault().close();
+            metrics.close();
+        }
+    }
+
+    private static void run(GenerationPipeline pipeline, Path input, Path output,
+                            int concurrency, RateLimiter rateLimiter) throws IOException, InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger compiled = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int submitted = 0;
+        int invalid = 0;
+        long start = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                JSONObject item;
+                try {
+                    item = JSON.parseObject(line);
+                } catch (JSONException e) {
+                    invalid++;
+                    writeInvalid(writer, lineNumber, null, "无法解析的 JSON: " + e.getMessage());
+                    continue;
+                }
+                String id = item != null && item.containsKey("id")
+                        ? item.getString("id") : String.valueOf(lineNumber);
+                String description = item == null ? null : item.getString("description");
+                if (description == null || description.isBlank()) {
+                    invalid++;
+                    writeInvalid(writer, lineNumber, id, "缺少 description 或 description 为空");
+                    continue;
+                }
+
+                permits.acquire();
+                rateLimiter.acquire();
+                submitted++;
+
+                long itemStart = System.nanoTime();
+                String[] reusedFrom = new String[1];
+                CompletableFuture<GenerationResult> task = pipeline.submit(description, new GenerationListener() {
+                    @Override
+                    public void onLines(String lines) {
+                    }
+
+                    @Override
+                    public void onReused(String matched, double similarity) {
+                        reusedFrom[0] = matched;
+                    }
+                });
+                task.whenComplete((result, error) -> {
+                    long latencyMillis = (System.nanoTime() - itemStart) / 1_000_000;
+                    latencies.add(latencyMillis);
+
+                    JSONObject record = new JSONObject()
+                            .fluentPut("id", id)
+                            .fluentPut("description", description)
+                            .fluentPut("latencyMs", latencyMillis);
+                    if (error != null) {
+                        failed.incrementAndGet();
+                        record.put("error", error.getMessage());
+                    } else {
+                        if (result.compiled()) {
+                            compiled.incrementAndGet();
+                        }
+                        record.put("compiled", result.compiled());
+                        if (reusedFrom[0] != null) {
+                            record.put("reusedFrom", reusedFrom[0]);
+                        }
+                        record.put("code", result.code());
+                        record.put("errors", result.compileErrors());
+                    }
+                    write(writer, record);
+                    permits.release();
+                });
+            }
+
+            // 等待所有在途任务结束
+            permits.acquire(concurrency);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+
+        System.out.println("===== 批量生成完成 =====");
+        System.out.printf("总数: %d  编译通过: %d  失败: %d  无效输入: %d%n",
+                submitted, compiled.get(), failed.get(), invalid);
+        System.out.printf("耗时: %.1f s  吞吐: %.2f 条/s%n", seconds, submitted / seconds);
+        System.out.printf("延迟 p50: %d ms  p90: %d ms  p99: %d ms  max: %d ms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+    }
+
+    private static void write(BufferedWriter writer, JSONObject record) {
+        synchronized (writer) {
+            try {
+                writer.write(record.toJSONString());
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                System.out.println("  写入结果失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void writeInvalid(BufferedWriter writer, int lineNumber, String id, String error) {
+        System.out.println("  第 " + lineNumber + " 行无效，已跳过: " + error);
+        write(writer, new JSONObject()
+                .fluentPut("line", lineNumber)
+                .fluentPut("id", id)
+                .fluentPut("error", error));
+    }
+
+    static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private static void printUsage() {
+        System.out.println("用法: BatchMain --input <in.jsonl> --output <out.jsonl> "
+                + "[--concurrency N] [--rate 每秒请求数] [--mock]");
+    }
+}
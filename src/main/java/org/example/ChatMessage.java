@@ -0,0 +1,13 @@
+package org.example;
+
+// 对话中的一条消息，role 为 user / assistant（system 提示由后端自己添加）
+public record ChatMessage(String role, String content) {
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage("user", content);
+    }
+
+    public static ChatMessage assistant(String content) {
+        return new ChatMessage("assistant", content);
+    }
+}
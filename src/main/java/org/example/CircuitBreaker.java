@@ -0,0 +1,70 @@
+package org.example;
+
+// 连续失败计数熔断器：连续 failureThreshold 次失败后断开 openMillis，期间直接拒绝请求；
+// 到期后放行一个试探请求（半开），成功则恢复，失败则再次断开；试探请求被取消时不计成败，下一个请求重新试探
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    // 是否允许发起请求；半开状态下只放行一个试探请求
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                return false;
+            }
+            probing = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probing = false;
+        }
+    }
+
+    // 请求被取消、没有得出成败时调用：释放半开状态下的试探名额
+    public synchronized void onCancelled() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    // 断开状态下距离下一次试探的剩余毫秒数
+    public synchronized long retryAfterMillis() {
+        return state == State.OPEN ? Math.max(0, openMillis - (System.currentTimeMillis() - openedAt)) : 0;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+}
@@ -0,0 +1,31 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// 代码生成后端：把一个 Prompt 流式地变成模型输出。
+// 默认实现是星火 WebSocket（SparkClient）；-Dspark.backend=mock 时使用本地回放的 MockSparkServer，可离线压测。
+public interface CodeGenerationBackend {
+
+    // 返回原始模型输出；取消返回的 Future 应立即断开连接，超时则以已收到的部分内容完成。
+    // messages 为完整的对话历史（多轮时包含之前的 assistant 回复），最后一条是本轮的用户消息
+    CompletableFuture<String> stream(List<ChatMessage> messages, GenerationOptions options, Consumer<String> onDelta,
+                                     long timeout, TimeUnit unit);
+
+    default CompletableFuture<String> stream(String prompt, GenerationOptions options, Consumer<String> onDelta,
+                                             long timeout, TimeUnit unit) {
+        return stream(List.of(ChatMessage.user(prompt)), options, onDelta, timeout, unit);
+    }
+
+    void shutdown();
+
+    static CodeGenerationBackend create() {
+        String backend = System.getProperty("spark.backend", "spark");
+        if ("mock".equalsIgnoreCase(backend)) {
+            return MockSparkServer.startBackend();
+        }
+        return new SparkClient();
+    }
+}
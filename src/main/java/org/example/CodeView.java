@@ -0,0 +1,352 @@
+package org.example;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.*;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 虚拟化的代码视图：文档存放在 PieceTable 中，ListView 只为可见的行创建单元格，
+// 输出再长也只有一屏的节点参与布局。语法着色在后台线程上计算，完成后只刷新受影响的可见行；
+// 编译错误所在的行以红色底色和行号旁的提示标出。单元格不折行，宽度统一为最长一行的宽度，过长时出现横向滚动条。
+// 除构造外的方法都只能在 FX 线程上调用
+public class CodeView extends ListView<Integer> {
+
+    private static final Font MONO = Font.font("Monospaced", 13);
+    private static final Font MONO_BOLD = Font.font("Monospaced", FontWeight.BOLD, 13);
+    private static final Font MONO_ITALIC = Font.font("Monospaced", FontPosture.ITALIC, 13);
+    private static final double LINE_HEIGHT = 18;
+    // 行号栏宽度、行号与代码的间距，以及单元格两侧的内边距
+    private static final double GUTTER_WIDTH = 40 + 8 + 12;
+    private static final Color[] COLORS = {
+            Color.web("#0033b3"), Color.web("#067d17"), Color.web("#8c8c8c"), Color.web("#1750eb"), Color.web("#9e880d")
+    };
+
+    // 所有视图共用一个后台着色线程
+    private static final ExecutorService HIGHLIGHTER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "code-highlighter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PieceTable document = new PieceTable();
+    private final Lines lines = new Lines();
+    // ListView 自己管理单元格的创建和丢弃，这里只弱引用，被丢弃的单元格可以被回收
+    private final Set<CodeCell> cells = Collections.newSetFromMap(new WeakHashMap<>());
+    // 等宽字体下一个半角字符的宽度；最长一行的列数（全角字符算两列），只增不减，整体替换文本时重算
+    private final double charWidth;
+    private int maxColumns;
+    private final DoubleProperty contentWidth = new SimpleDoubleProperty();
+    private final Map<Integer, String> diagnostics = new HashMap<>();
+
+    // 着色结果按行保存；epoch 在整体替换文本时递增，用于丢弃过期的后台结果
+    private final List<int[]> spans = new ArrayList<>();
+    private final List<Boolean> continued = new ArrayList<>();
+    private int epoch;
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private boolean highlighting;
+
+    public CodeView() {
+        Text probe = new Text("0");
+        probe.setFont(MONO);
+        charWidth = probe.getLayoutBounds().getWidth();
+        setItems(lines);
+        setFixedCellSize(LINE_HEIGHT);
+        setCellFactory(view -> new CodeCell());
+        getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        MenuItem copySelected = new MenuItem("复制选中行");
+        copySelected.setOnAction(e -> copy(selectedText()));
+        MenuItem copyAll = new MenuItem("复制全部");
+        copyAll.setOnAction(e -> copy(getText()));
+        setContextMenu(new ContextMenu(copySelected, copyAll));
+        setOnKeyPressed(e -> {
+            if (e.isShortcutDown() && e.getCode() == KeyCode.C) {
+                copy(selectedText());
+            }
+        });
+    }
+
+    // ================== 文档操作 ==================
+    public String getText() {
+        return document.text();
+    }
+
+    public void setText(String text) {
+        int oldSize = lines.size();
+        document.setText(text);
+        epoch++;
+        spans.clear();
+        continued.clear();
+        diagnostics.clear();
+        lines.replaced(oldSize);
+        maxColumns = 0;
+        measure(0);
+        markDirty(0);
+        renderAll();
+    }
+
+    public void appendText(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        int oldSize = lines.size();
+        boolean follow = oldSize == 0 || isShowing(oldSize - 1);
+        int lastLine = document.lineCount() - 1;
+        document.append(text);
+        lines.appended(oldSize);
+        measure(lastLine);
+        render(lastLine, lastLine + 1);
+        markDirty(lastLine);
+        if (follow) {
+            scrollTo(lines.size() - 1);
+        }
+    }
+
+    // 标记编译错误：firstLine 为代码第 1 行在视图中的行号（前面可能有文件头），problem.line() 从 1 开始
+    public void setDiagnostics(int firstLine, List<CompileResult.Problem> problems) {
+        diagnostics.clear();
+        for (CompileResult.Problem problem : problems) {
+            if (problem.line() > 0) {
+                diagnostics.merge(firstLine + (int) problem.line() - 1, problem.message(), (a, b) -> a + "\n" + b);
+            }
+        }
+        renderAll();
+        diagnostics.keySet().stream().min(Integer::compare).ifPresent(this::scrollTo);
+    }
+
+    // 从 from 行起更新最长行的列数；等宽字体下按列数换算宽度，不必为每行创建文本节点测量
+    private void measure(int from) {
+        int count = lines.size();
+        for (int line = Math.max(0, from); line < count; line++) {
+            maxColumns = Math.max(maxColumns, columns(document.line(line)));
+        }
+        contentWidth.set(GUTTER_WIDTH + maxColumns * charWidth);
+    }
+
+    private static int columns(String line) {
+        int columns = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                columns += 8 - columns % 8;
+            } else {
+                columns += c < 0x1100 ? 1 : 2;
+            }
+        }
+        return columns;
+    }
+
+    // ================== 后台着色 ==================
+    private void markDirty(int line) {
+        dirtyFrom = Math.min(dirtyFrom, line);
+        if (!highlighting) {
+            startHighlight();
+        }
+    }
+
+    private void startHighlight() {
+        if (dirtyFrom == Integer.MAX_VALUE || document.length() == 0) {
+            dirtyFrom = Integer.MAX_VALUE;
+            return;
+        }
+        // 退到不以跨行 token 中间开头的行，保证从这里开始的词法状态是干净的
+        int from = Math.min(dirtyFrom, continued.size());
+        while (from > 0 && (from >= continued.size() || continued.get(from))) {
+            from--;
+        }
+        dirtyFrom = Integer.MAX_VALUE;
+        highlighting = true;
+
+        int expectedEpoch = epoch;
+        int firstLine = from;
+        String text = document.text(document.lineStart(from));
+        HIGHLIGHTER.execute(() -> {
+            SyntaxHighlighter.Result result = SyntaxHighlighter.highlight(text, firstLine);
+            Platform.runLater(() -> apply(result, expectedEpoch));
+        });
+    }
+
+    private void apply(SyntaxHighlighter.Result result, int expectedEpoch) {
+        highlighting = false;
+        if (expectedEpoch == epoch) {
+            int from = result.firstLine();
+            int to = from + result.spans().size();
+            while (spans.size() > from) {
+                spans.remove(spans.size() - 1);
+                continued.remove(continued.size() - 1);
+            }
+            spans.addAll(result.spans());
+            for (boolean c : result.continued()) {
+                continued.add(c);
+            }
+            render(from, to);
+        }
+        startHighlight();
+    }
+
+    // ================== 渲染 ==================
+    private void render(int from, int to) {
+        for (CodeCell cell : cells) {
+            int index = cell.getIndex();
+            if (index >= from && index < to) {
+                cell.render(index);
+            }
+        }
+    }
+
+    private void renderAll() {
+        render(0, Integer.MAX_VALUE);
+    }
+
+    private boolean isShowing(int line) {
+        for (CodeCell cell : cells) {
+            if (cell.getIndex() == line && cell.isVisible() && !cell.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String selectedText() {
+        List<Integer> selected = new ArrayList<>(getSelectionModel().getSelectedIndices());
+        Collections.sort(selected);
+        StringJoiner joiner = new StringJoiner("\n");
+        for (int index : selected) {
+            if (index >= 0 && index < lines.size()) {
+                joiner.add(document.line(index));
+            }
+        }
+        return joiner.toString();
+    }
+
+    private static void copy(String text) {
+        if (!text.isEmpty()) {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(text);
+            Clipboard.getSystemClipboard().setContent(content);
+        }
+    }
+
+    // 列表项就是行号本身；空文档对应空列表，以便显示占位提示
+    private final class Lines extends ObservableListBase<Integer> {
+
+        @Override
+        public Integer get(int index) {
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return document.length() == 0 ? 0 : document.lineCount();
+        }
+
+        void appended(int oldSize) {
+            int newSize = size();
+            if (newSize > oldSize) {
+                beginChange();
+                nextAdd(oldSize, newSize);
+                endChange();
+            }
+        }
+
+        void replaced(int oldSize) {
+            beginChange();
+            nextReplace(0, size(), Collections.nCopies(oldSize, 0));
+            endChange();
+        }
+    }
+
+    private final class CodeCell extends ListCell<Integer> {
+
+        private final Label gutter = new Label();
+        private final TextFlow flow = new TextFlow();
+        private final HBox box = new HBox(8, gutter, flow);
+
+        CodeCell() {
+            cells.add(this);
+            gutter.setFont(MONO);
+            gutter.setMinWidth(40);
+            gutter.setTextFill(Color.GRAY);
+            // 报告整篇文档的最大行宽，ListView 据此决定是否显示横向滚动条；TextFlow 不会因宽度不足而折行
+            prefWidthProperty().bind(contentWidth);
+        }
+
+        @Override
+        protected void updateItem(Integer item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setGraphic(null);
+                setTooltip(null);
+                setStyle(null);
+            } else {
+                render(item);
+            }
+        }
+
+        void render(int line) {
+            if (line >= lines.size()) {
+                return;
+            }
+            String text = document.line(line);
+            int[] lineSpans = line < spans.size() ? spans.get(line) : null;
+
+            List<Text> nodes = new ArrayList<>();
+            int pos = 0;
+            if (lineSpans != null) {
+                for (int i = 0; i + 2 < lineSpans.length; i += 3) {
+                    // 着色结果可能落后于正在流式追加的最后一行，超出部分截掉
+                    int start = Math.min(lineSpans[i], text.length());
+                    int end = Math.min(lineSpans[i + 1], text.length());
+                    if (start < pos || start >= end) {
+                        continue;
+                    }
+                    if (start > pos) {
+                        nodes.add(plain(text.substring(pos, start)));
+                    }
+                    nodes.add(styled(text.substring(start, end), lineSpans[i + 2]));
+                    pos = end;
+                }
+            }
+            if (pos < text.length() || nodes.isEmpty()) {
+                nodes.add(plain(text.substring(pos)));
+            }
+            flow.getChildren().setAll(nodes);
+
+            String problem = diagnostics.get(line);
+            gutter.setText(problem != null ? "✖ " + (line + 1) : String.valueOf(line + 1));
+            gutter.setTextFill(problem != null ? Color.RED : Color.GRAY);
+            setTooltip(problem != null ? new Tooltip(problem) : null);
+            setStyle(problem != null ? "-fx-background-color: #ffe4e4;" : null);
+            setGraphic(box);
+        }
+
+        private static Text plain(String text) {
+            Text node = new Text(text);
+            node.setFont(MONO);
+            return node;
+        }
+
+        private static Text styled(String text, int style) {
+            Text node = new Text(text);
+            node.setFill(COLORS[style]);
+            node.setFont(style == SyntaxHighlighter.KEYWORD ? MONO_BOLD
+                    : style == SyntaxHighlighter.COMMENT ? MONO_ITALIC : MONO);
+            return node;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example;
+
+import java.util.List;
+import java.util.Map;
+
+// 一次内存编译的结果：通过时 errors 为 null，classBytes 为编译产物（二进制类名 → 字节码）；
+// 未通过时 problems 按行列出编译器的诊断，供代码视图标记出错的行
+public record CompileResult(String className, String errors, Map<String, byte[]> classBytes, List<Problem> problems) {
+
+    // line 从 1 开始；无法定位到行时为 0
+    public record Problem(long line, String message) {
+    }
+
+    public boolean success() {
+        return errors == null;
+    }
+
+    static CompileResult failure(String className, String errors) {
+        return failure(className, errors, List.of());
+    }
+
+    static CompileResult failure(String className, String errors, List<Problem> problems) {
+        return new CompileResult(className, errors, Map.of(), problems);
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// 常驻的编译服务：复用同一个 JavaCompiler 和一组已预热的 StandardJavaFileManager。
+// 文件管理器会缓存已打开的 JDK 模块和 classpath 归档，复用后单次校验只需解析生成的源码本身。
+// 文件管理器不是线程安全的，因此用一个有界池分配给并发的编译任务。
+// 这是进程内共享的单例，只由程序入口在退出时 close()；close() 之后仍可继续使用，会重新创建文件管理器。
+public class CompilerService {
+
+    private static final int POOL_SIZE = Integer.getInteger("compiler.poolSize",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    private static final String WARM_UP_SOURCE = """
+            import javafx.application.Application;
+            import javafx.scene.Scene;
+            import javafx.scene.control.Button;
+            import javafx.scene.layout.VBox;
+            import javafx.stage.Stage;
+
+            public class WarmUp extends Application {
+                @Override
+                public void start(Stage stage) {
+                    stage.setScene(new Scene(new VBox(new Button("ok")), 100, 100));
+                }
+            }
+            """;
+
+    private static final class Holder {
+        static final CompilerService INSTANCE = new CompilerService();
+    }
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final List<String> options = buildOptions();
+    private final BlockingQueue<StandardJavaFileManager> idle = new ArrayBlockingQueue<>(POOL_SIZE);
+    private int created;
+    // 每次 close() 加一；借出时的代数与当前不同的文件管理器归还时直接关闭
+    private int epoch;
+
+    public static CompilerService getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    // 编译一段生成的代码；若未找到 class 定义或环境不是 JDK，返回失败结果而不抛异常
+    public CompileResult compile(String code) {
+        String className = extractClassName(code);
+        if (className == null) {
+            return CompileResult.failure(null, "// 编译失败：未找到 class 定义\n");
+        }
+        if (compiler == null) {
+            return CompileResult.failure(className, "// 编译失败：未检测到 JDK（不是 JRE）\n");
+        }
+
+        StandardJavaFileManager standardManager;
+        int acquiredEpoch;
+        synchronized (this) {
+            acquiredEpoch = epoch;
+        }
+        try {
+            standardManager = acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompileResult.failure(className, "// 编译异常：等待编译器时被中断\n");
+        }
+
+        try {
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            MemoryJavaFileManager fileManager = new MemoryJavaFileManager(standardManager);
+
+            List<JavaFileObject> units = List.of(MemoryJavaFileManager.source(className, code));
+
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(null, fileManager, diagnostics, options, null, units);
+
+            boolean success = task.call();
+            Map<String, byte[]> classBytes = fileManager.classBytes();
+            fileManager.close();
+
+            if (!success) {
+                StringBuilder error = new StringBuilder();
+                List<CompileResult.Problem> problems = new ArrayList<>();
+                error.append("// ===== 编译失败 =====\n");
+                for (Diagnostic<?> d : diagnostics.getDiagnostics()) {
+                    String message = d.getMessage(null);
+                    error.append("行 ").append(d.getLineNumber())
+                         .append(" : ").append(message).append("\n");
+                    problems.add(new CompileResult.Problem(Math.max(0, d.getLineNumber()), message));
+                }
+                return CompileResult.failure(className, error.toString(), problems);
+            }
+
+            return new CompileResult(className, null, classBytes, List.of());
+
+        } catch (Exception e) {
+            return CompileResult.failure(className, "// 编译异常：" + e.getMessage() + "\n");
+        } finally {
+            release(standardManager, acquiredEpoch);
+        }
+    }
+
+    // 用一段最小的 JavaFX 程序预热：加载 javac 自身的类并打开 JDK/JavaFX 归档
+    public void warmUp() {
+        compile(WARM_UP_SOURCE);
+    }
+
+    // 池满时限时等待后重新检查：close() 期间借出的文件管理器归还时被关闭而不是放回，等待方需要自己补建
+    private StandardJavaFileManager acquire() throws InterruptedException {
+        while (true) {
+            StandardJavaFileManager manager = idle.poll();
+            if (manager != null) {
+                return manager;
+            }
+            synchronized (this) {
+                if (created < POOL_SIZE) {
+                    created++;
+                    return compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+                }
+            }
+            manager = idle.poll(100, TimeUnit.MILLISECONDS);
+            if (manager != null) {
+                return manager;
+            }
+        }
+    }
+
+    private void release(StandardJavaFileManager manager, int acquiredEpoch) {
+        synchronized (this) {
+            if (acquiredEpoch == epoch) {
+                idle.offer(manager);
+                return;
+            }
+            created--;
+        }
+        closeQuietly(manager);
+    }
+
+    // 关闭空闲的文件管理器并释放它们缓存的归档；正在使用的在归还时关闭。之后的编译会重新创建文件管理器
+    public synchronized void close() {
+        epoch++;
+        StandardJavaFileManager manager;
+        while ((manager = idle.poll()) != null) {
+            created--;
+            closeQuietly(manager);
+        }
+    }
+
+    private static void closeQuietly(StandardJavaFileManager manager) {
+        try {
+            manager.close();
+        } catch (IOException ignored) {
+            // 关闭失败不影响退出
+        }
+    }
+
+    // classpath 只在启动时解析一次：以 javafx:run 启动时 JavaFX 位于模块路径上，需要一并加入
+    private static List<String> buildOptions() {
+        List<String> options = new ArrayList<>();
+        StringBuilder classPath = new StringBuilder(System.getProperty("java.class.path", ""));
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null && !modulePath.isEmpty()) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(modulePath);
+        }
+        options.add("-classpath");
+        options.add(classPath.toString());
+        // 生成的代码不需要注解处理，跳过对 classpath 上处理器的扫描
+        options.add("-proc:none");
+        options.add("-encoding");
+        options.add("UTF-8");
+        return options;
+    }
+
+    // ================== 提取类名 ==================
+    // 返回二进制类名：有 package 声明时带上包名，与编译产物 classBytes 的键一致
+    static String extractClassName(String code) {
+        String packageName = null;
+        for (String line : code.split("\n")) {
+            line = line.trim();
+            if (packageName == null && line.startsWith("package ")) {
+                int end = line.indexOf(';');
+                packageName = line.substring("package ".length(), end < 0 ? line.length() : end).replaceAll("\\s+", "");
+            } else if (line.startsWith("public class ")) {
+                String name = line.split("\\s+")[2];
+                int end = 0;
+                while (end < name.length() && Character.isJavaIdentifierPart(name.charAt(end))) {
+                    end++;
+                }
+                if (end == 0) {
+                    return null;
+                }
+                String simpleName = name.substring(0, end);
+                return packageName == null || packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,301 @@
+package org.example;
+
+// 星火响应帧的专用解码器：单遍扫描 JSON 文本，只取出 header.code / header.message / header.status
+// 、payload.choices.text[0].content 以及末帧的 payload.usage.text 用量，其余字段直接跳过，不构建对象树。
+// 字符串解码复用内部缓冲区；没有转义字符时直接截取子串。非线程安全，每个连接持有一个
+final class FrameDecoder {
+
+    private final StringBuilder buffer = new StringBuilder(256);
+    private String text;
+    private int pos;
+
+    private int code;
+    private String message;
+    private int status;
+    private String content;
+    private int promptTokens;
+    private int completionTokens;
+
+    SparkClient.Frame decode(String frame) {
+        text = frame;
+        pos = 0;
+        code = 0;
+        message = null;
+        status = 0;
+        content = null;
+        promptTokens = 0;
+        completionTokens = 0;
+        try {
+            readObject(Scope.ROOT);
+        } catch (IndexOutOfBoundsException e) {
+            throw malformed();
+        } finally {
+            text = null;
+        }
+        return new SparkClient.Frame(code, message, status, code == 0 ? content : null,
+                promptTokens, completionTokens);
+    }
+
+    // 关心的对象层级
+    private enum Scope { ROOT, HEADER, PAYLOAD, CHOICES, TEXT_ITEM, USAGE, USAGE_TEXT, OTHER }
+
+    private void readObject(Scope scope) {
+        if (scope != Scope.ROOT && peek() != '{') {
+            skipValue();
+            return;
+        }
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            int keyStart = pos + 1;
+            skipString();
+            int keyEnd = pos - 1;
+            expect(':');
+            readMember(scope, keyStart, keyEnd);
+            char c = next();
+            if (c == '}') {
+                return;
+            }
+            if (c != ',') {
+                throw malformed();
+            }
+        }
+    }
+
+    private void readMember(Scope scope, int keyStart, int keyEnd) {
+        switch (scope) {
+            case ROOT -> {
+                if (key(keyStart, keyEnd, "header")) {
+                    readObject(Scope.HEADER);
+                    return;
+                }
+                if (key(keyStart, keyEnd, "payload")) {
+                    readObject(Scope.PAYLOAD);
+                    return;
+                }
+            }
+            case HEADER -> {
+                if (key(keyStart, keyEnd, "code")) {
+                    code = readInt();
+                    return;
+                }
+                if (key(keyStart, keyEnd, "status")) {
+                    status = readInt();
+                    return;
+                }
+                if (key(keyStart, keyEnd, "message")) {
+                    message = readString();
+                    return;
+                }
+            }
+            case PAYLOAD -> {
+                if (key(keyStart, keyEnd, "choices")) {
+                    readObject(Scope.CHOICES);
+                    return;
+                }
+                if (key(keyStart, keyEnd, "usage")) {
+                    readObject(Scope.USAGE);
+                    return;
+                }
+            }
+            case USAGE -> {
+                if (key(keyStart, keyEnd, "text")) {
+                    readObject(Scope.USAGE_TEXT);
+                    return;
+                }
+            }
+            case USAGE_TEXT -> {
+                if (key(keyStart, keyEnd, "prompt_tokens")) {
+                    promptTokens = readInt();
+                    return;
+                }
+                if (key(keyStart, keyEnd, "completion_tokens")) {
+                    completionTokens = readInt();
+                    return;
+                }
+            }
+            case CHOICES -> {
+                if (key(keyStart, keyEnd, "text")) {
+                    readTextArray();
+                    return;
+                }
+            }
+            case TEXT_ITEM -> {
+                if (key(keyStart, keyEnd, "content")) {
+                    content = readString();
+                    return;
+                }
+            }
+            default -> {
+            }
+        }
+        skipValue();
+    }
+
+    // 只读取数组的第一个元素，其余跳过
+    private void readTextArray() {
+        if (peek() != '[') {
+            skipValue();
+            return;
+        }
+        pos++;
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+        boolean first = true;
+        while (true) {
+            if (first && peek() == '{') {
+                readObject(Scope.TEXT_ITEM);
+            } else {
+                skipValue();
+            }
+            first = false;
+            char c = next();
+            if (c == ']') {
+                return;
+            }
+            if (c != ',') {
+                throw malformed();
+            }
+        }
+    }
+
+    // ================== 基本值 ==================
+    private int readInt() {
+        if (peek() != '-' && !Character.isDigit(text.charAt(pos))) {
+            skipValue();
+            return 0;
+        }
+        boolean negative = text.charAt(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        int value = 0;
+        while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+            value = value * 10 + (text.charAt(pos++) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private String readString() {
+        if (peek() != '"') {
+            skipValue();
+            return null;
+        }
+        int start = ++pos;
+        while (true) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                return text.substring(start, pos++);
+            }
+            if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+
+        // 有转义字符：在复用的缓冲区里解码
+        buffer.setLength(0);
+        buffer.append(text, start, pos);
+        while (true) {
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                return buffer.toString();
+            }
+            if (c != '\\') {
+                buffer.append(c);
+                continue;
+            }
+            char e = text.charAt(pos++);
+            switch (e) {
+                case 'n' -> buffer.append('\n');
+                case 't' -> buffer.append('\t');
+                case 'r' -> buffer.append('\r');
+                case 'b' -> buffer.append('\b');
+                case 'f' -> buffer.append('\f');
+                case 'u' -> {
+                    buffer.append((char) Integer.parseInt(text, pos, pos + 4, 16));
+                    pos += 4;
+                }
+                default -> buffer.append(e);
+            }
+        }
+    }
+
+    private void skipString() {
+        expect('"');
+        while (true) {
+            char c = text.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+    }
+
+    private void skipValue() {
+        char c = peek();
+        if (c == '"') {
+            skipString();
+            return;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                char d = text.charAt(pos);
+                if (d == '"') {
+                    skipString();
+                    continue;
+                }
+                if (d == '{' || d == '[') {
+                    depth++;
+                } else if (d == '}' || d == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0);
+            return;
+        }
+        // 数字、true、false、null
+        while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+            pos++;
+        }
+    }
+
+    // ================== 扫描工具 ==================
+    private boolean key(int start, int end, String name) {
+        return end - start == name.length() && text.regionMatches(start, name, 0, name.length());
+    }
+
+    private char peek() {
+        skipWhitespace();
+        return text.charAt(pos);
+    }
+
+    private char next() {
+        skipWhitespace();
+        return text.charAt(pos++);
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw malformed();
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && text.charAt(pos) <= ' ') {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException malformed() {
+        return new IllegalArgumentException("无法解析星火响应帧（位置 " + pos + "）");
+    }
+}
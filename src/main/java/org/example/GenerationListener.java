@@ -0,0 +1,21 @@
+package org.example;
+
+// 生成过程的回调，均在网络线程或流水线线程上调用
+@FunctionalInterface
+public interface GenerationListener {
+
+    // 收到已格式化好的整行代码
+    void onLines(String lines);
+
+    // 上一次结果未通过编译，即将带着编译错误发起第 attempt 次修复；之前推送的代码作废
+    default void onRepair(int attempt, String compileErrors) {
+    }
+
+    // 并行的另一路生成先通过了编译，之前推送的代码作废，以 code 为准
+    default void onReplaced(String code) {
+    }
+
+    // 没有调用模型，而是复用了描述几乎相同的 description 之前生成的结果；随后照常通过 onLines 收到代码
+    default void onReused(String description, double similarity) {
+    }
+}
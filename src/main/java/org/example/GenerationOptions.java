@@ -0,0 +1,11 @@
+package org.example;
+
+// 模型参数：对应请求中的 parameter.chat 部分
+public record GenerationOptions(String domain, double temperature, int maxTokens) {
+
+    public static final GenerationOptions DEFAULT = new GenerationOptions("spark-x", 0.2, 4096);
+
+    public GenerationOptions withTemperature(double temperature) {
+        return new GenerationOptions(domain, temperature, maxTokens);
+    }
+}
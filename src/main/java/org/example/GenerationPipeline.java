@@ -0,0 +1,282 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 生成流水线：构建 Prompt → 查缓存（精确匹配，再查近似重复的描述）→ 合并相同的进行中请求 → 远程生成（同时流式格式化）→ 格式化收尾 → 编译校验，全部异步执行并支持取消。
+// 编译未通过时把编译错误作为同一对话的下一轮消息发回模型自动修复，次数和总耗时都有上限。
+// hedge.count > 1 时额外并行发起若干路不同温度的生成，取最先通过编译的一路并取消其余各路
+public class GenerationPipeline {
+
+    private static final long GENERATE_TIMEOUT_SECONDS = Long.getLong("spark.generate.timeoutSeconds", 30);
+    private static final int REPAIR_MAX_ATTEMPTS = Integer.getInteger("repair.maxAttempts", 2);
+    private static final long REPAIR_BUDGET_SECONDS = Long.getLong("repair.budgetSeconds", 60);
+    private static final int HEDGE_COUNT = Integer.getInteger("hedge.count", 1);
+    private static final long HEDGE_DELAY_MILLIS = Long.getLong("hedge.delayMs", 0);
+    private static final double HEDGE_TEMPERATURE_STEP = Double.parseDouble(
+            System.getProperty("hedge.temperatureStep", "0.3"));
+    private static final String REPAIR_PROMPT = "以下代码编译失败，请修复所有错误并返回完整的代码：\n";
+    private static final int POOL_SIZE = Integer.getInteger("pipeline.poolSize",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    private static final AtomicBoolean FIRST_REQUEST = new AtomicBoolean();
+
+    private final CodeGenerationBackend backend;
+    private final ExecutorService executor;
+    private final CompilerService compilerService = CompilerService.getDefault();
+    private final ResponseCache cache = new ResponseCache();
+    private final SimilarityIndex similar = new SimilarityIndex();
+    private final SingleFlight flights = new SingleFlight();
+
+    public GenerationPipeline(CodeGenerationBackend backend) {
+        this.backend = backend;
+        this.executor = createExecutor();
+    }
+
+    // 提交一次生成；listener 在网络线程上陆续收到已格式化好的整行代码。
+    // 取消返回的 Future 会关闭 WebSocket 并跳过尚未开始的后续阶段
+    public CompletableFuture<GenerationResult> submit(String userDescription, GenerationListener listener) {
+        return submit(userDescription, GenerationOptions.DEFAULT, listener);
+    }
+
+    public CompletableFuture<GenerationResult> submit(String userDescription, GenerationOptions options,
+                                                      GenerationListener listener) {
+        CompletableFuture<GenerationResult> task = new CompletableFuture<>();
+        long startNanos = System.nanoTime();
+
+        CompletableFuture.supplyAsync(() -> PromptBuilder.buildPrompt(userDescription), executor)
+                .thenCompose(prompt -> {
+                    String key = ResponseCache.key(prompt, options);
+                    GenerationResult cached = cache.get(key);
+                    Metrics.get().counter(cached != null ? "cache_hits" : "cache_misses").increment();
+                    if (cached != null) {
+                        similar.put(userDescription, options, cached);
+                        listener.onLines(cached.code());
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    // 精确缓存未命中时再找描述几乎相同的历史结果
+                    long lookupStart = System.nanoTime();
+                    SimilarityIndex.Match match = similar.find(userDescription, options);
+                    Metrics.get().timer("similar_lookup").recordSince(lookupStart);
+                    Metrics.get().counter(match != null ? "similar_hits" : "similar_misses").increment();
+                    if (match != null) {
+                        listener.onReused(match.description(), match.similarity());
+                        listener.onLines(match.result().code());
+                        return CompletableFuture.completedFuture(match.result());
+                    }
+                    // 相同的请求正在生成时挂到那一次上，不再单独发起
+                    return flights.join(key, listener, task, (broadcast, control) -> {
+                        CompletableFuture<GenerationResult> generated = HEDGE_COUNT > 1
+                                ? hedged(prompt, options, broadcast, control)
+                                : generate(prompt, options, broadcast, control);
+                        return generated.thenApply(result -> {
+                            cache.put(key, result);
+                            similar.put(userDescription, options, result);
+                            return result;
+                        });
+                    });
+                })
+                .whenComplete((result, error) -> {
+                    Metrics.get().timer("pipeline_total").recordSince(startNanos);
+                    // 进程内第一个请求单独计时，用来跟踪冷启动开销
+                    if (FIRST_REQUEST.compareAndSet(false, true)) {
+                        Metrics.get().timer("pipeline_first_request").recordSince(startNanos);
+                        System.out.println("首个请求耗时: "
+                                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+                    }
+                    if (error != null) {
+                        Metrics.get().counter("pipeline_failures").increment();
+                        task.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error);
+                    } else {
+                        Metrics.get().counter(result.compiled() ? "pipeline_compiled" : "pipeline_not_compiled")
+                                .increment();
+                        task.complete(result);
+                    }
+                });
+
+        return task;
+    }
+
+    // ================== 并行对冲 ==================
+    // 第 0 路照常把代码推给 listener；其余各路在 hedge.delayMs 后发起（第 0 路已结束则不再发起），
+    // 温度逐路增加，生成过程不推送，赢了之后通过 onReplaced 一次性替换显示的代码。
+    // 没有任何一路通过编译时，按路序取第一个有结果的一路
+    private CompletableFuture<GenerationResult> hedged(String prompt, GenerationOptions options,
+                                                       GenerationListener listener,
+                                                       CompletableFuture<GenerationResult> task) {
+        CompletableFuture<GenerationResult> winner = new CompletableFuture<>();
+        List<CompletableFuture<GenerationResult>> lanes = new ArrayList<>();
+        for (int i = 0; i < HEDGE_COUNT; i++) {
+            lanes.add(new CompletableFuture<>());
+        }
+        AtomicBoolean decided = new AtomicBoolean();
+        AtomicInteger remaining = new AtomicInteger(HEDGE_COUNT);
+        Executor delayed = CompletableFuture.delayedExecutor(HEDGE_DELAY_MILLIS, TimeUnit.MILLISECONDS, executor);
+
+        for (int i = 0; i < HEDGE_COUNT; i++) {
+            int index = i;
+            CompletableFuture<GenerationResult> lane = lanes.get(i);
+            GenerationOptions laneOptions = i == 0 ? options
+                    : options.withTemperature(Math.min(1.0, options.temperature() + i * HEDGE_TEMPERATURE_STEP));
+            GenerationListener laneListener = i == 0 ? listener : lines -> { };
+            Runnable start = () -> {
+                if (lane.isDone()) {
+                    return;
+                }
+                // 第 0 路已经结束（没有通过编译，否则其余各路已被取消）：不再发起，取消本路让计数照常归零
+                if (index > 0 && lanes.get(0).isDone()) {
+                    lane.cancel(false);
+                    return;
+                }
+                if (index > 0) {
+                    Metrics.get().counter("pipeline_hedges").increment();
+                }
+                generate(prompt, laneOptions, laneListener, lane).whenComplete((result, error) -> {
+                    if (error != null) {
+                        lane.completeExceptionally(error);
+                    } else {
+                        lane.complete(result);
+                    }
+                });
+            };
+
+            lane.whenComplete((result, error) -> {
+                if (result != null && result.compiled() && decided.compareAndSet(false, true)) {
+                    if (index > 0) {
+                        Metrics.get().counter("pipeline_hedge_wins").increment();
+                        listener.onReplaced(result.code());
+                    }
+                    winner.complete(result);
+                } else if (remaining.decrementAndGet() == 0 && decided.compareAndSet(false, true)) {
+                    settle(lanes, listener, winner);
+                }
+            });
+
+            if (i == 0 || HEDGE_DELAY_MILLIS <= 0) {
+                start.run();
+            } else {
+                delayed.execute(start);
+            }
+        }
+
+        // 决出结果或整个任务被取消时，取消其余各路
+        winner.whenComplete((r, t) -> lanes.forEach(lane -> lane.cancel(true)));
+        task.whenComplete((r, t) -> {
+            if (task.isCancelled()) {
+                winner.cancel(true);
+            }
+        });
+        return winner;
+    }
+
+    // 所有路都结束且没有通过编译的结果
+    private static void settle(List<CompletableFuture<GenerationResult>> lanes, GenerationListener listener,
+                               CompletableFuture<GenerationResult> winner) {
+        for (int i = 0; i < lanes.size(); i++) {
+            GenerationResult result = lanes.get(i).exceptionally(t -> null).join();
+            if (result != null) {
+                if (i > 0) {
+                    listener.onReplaced(result.code());
+                }
+                winner.complete(result);
+                return;
+            }
+        }
+        lanes.get(0).whenComplete((r, error) -> winner.completeExceptionally(error));
+    }
+
+    private CompletableFuture<GenerationResult> generate(String prompt, GenerationOptions options,
+                                                         GenerationListener listener,
+                                                         CompletableFuture<GenerationResult> task) {
+        List<ChatMessage> history = new ArrayList<>();
+        history.add(ChatMessage.user(prompt));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(REPAIR_BUDGET_SECONDS);
+        return attempt(history, options, listener, task, 0, deadline);
+    }
+
+    // 远程生成（同时流式格式化）→ 格式化收尾 → 编译校验 → 未通过且还有余量时带着错误进入下一轮
+    private CompletableFuture<GenerationResult> attempt(List<ChatMessage> history, GenerationOptions options,
+                                                        GenerationListener listener,
+                                                        CompletableFuture<GenerationResult> task,
+                                                        int repairs, long deadline) {
+        StreamingJavaFormatter formatter = new StreamingJavaFormatter(listener::onLines);
+
+        // 修复轮次的超时不超过剩余的总预算
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(GENERATE_TIMEOUT_SECONDS);
+        if (repairs > 0) {
+            timeoutNanos = Math.min(timeoutNanos, deadline - System.nanoTime());
+        }
+        CompletableFuture<String> raw = backend.stream(List.copyOf(history), options, formatter::accept,
+                timeoutNanos, TimeUnit.NANOSECONDS);
+        // 任务被取消时把取消传递给正在进行的远程生成
+        task.whenComplete((r, t) -> {
+            if (task.isCancelled()) {
+                raw.cancel(true);
+            }
+        });
+
+        return raw.thenApplyAsync(content -> {
+            ensureActive(task);
+            String code = SparkClient.stripCodeFences(content);
+            if (code.isEmpty()) {
+                throw new CompletionException(new IllegalStateException("AI未生成有效代码"));
+            }
+            return code;
+        }, executor).thenComposeAsync(code -> {
+            ensureActive(task);
+            // 先收尾格式化再编译，诊断的行号与界面上显示的代码一致。
+            // 大部分代码已在接收时格式化完毕，这里只处理最后不完整的一行
+            long formatStart = System.nanoTime();
+            String formatted = formatter.finish();
+            Metrics.get().timer("pipeline_format").recordSince(formatStart);
+
+            long compileStart = System.nanoTime();
+            CompileResult compiled = compilerService.compile(formatted);
+            String errors = compiled.errors();
+            Metrics.get().timer("pipeline_compile").recordSince(compileStart);
+            if (errors != null && repairs < REPAIR_MAX_ATTEMPTS && System.nanoTime() < deadline) {
+                Metrics.get().counter("pipeline_repairs").increment();
+                listener.onRepair(repairs + 1, errors);
+                // 错误的行号对应格式化后的代码，回给模型的也必须是这份代码
+                history.add(ChatMessage.assistant(formatted));
+                history.add(ChatMessage.user(REPAIR_PROMPT + errors));
+                return attempt(history, options, listener, task, repairs + 1, deadline);
+            }
+            return CompletableFuture.completedFuture(new GenerationResult(formatted, errors, compiled));
+        }, executor);
+    }
+
+    // 编译服务是进程内共享的，由程序入口在退出时关闭
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static void ensureActive(CompletableFuture<?> task) {
+        if (task.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    // JDK 21+ 使用虚拟线程，JDK 17 上退化为有界线程池
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024), r -> {
+                        Thread thread = new Thread(r, "generation-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
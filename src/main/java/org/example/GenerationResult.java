@@ -0,0 +1,14 @@
+package org.example;
+
+// 一次生成流水线的最终结果：格式化后的代码，以及编译未通过时的错误说明（通过时为 null）。
+// compilation 为本次编译的产物，供预览直接加载；来自磁盘缓存的结果没有编译产物，为 null
+public record GenerationResult(String code, String compileErrors, CompileResult compilation) {
+
+    public GenerationResult(String code, String compileErrors) {
+        this(code, compileErrors, null);
+    }
+
+    public boolean compiled() {
+        return compileErrors == null;
+    }
+}
@@ -0,0 +1,545 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// 生成历史：只追加的分段日志 + 内存映射的定长索引。
+//   segment-NNNNN.log  记录体（描述、代码、编译错误），写满 history.segmentBytes 后换下一个段
+//   history.idx        每条记录一个 40 字节的索引项（时间、描述哈希、编译状态、段号、偏移、长度），
+//                      浏览只读索引，记录体按需从段文件中读出，历史再多也不会整体载入堆内存
+// 全文检索按段内存映射后顺序扫描；compact() 只保留最近 history.maxEntries 条未删除的记录并重写为一个新段。
+// 索引缺失或损坏时从段文件重建（删除标记只记在索引里，重建后会恢复）。
+// 打开时对 history.lock 加排他的文件锁，直到 close()：索引是内存映射的，两个进程同时追加或压缩会互相覆盖，
+// 目录已被另一个进程打开时 open 抛出 IOException，调用方应关闭历史功能。所有方法互斥，可在任意线程上调用
+public final class HistoryStore implements Closeable {
+
+    private static final long SEGMENT_BYTES = Long.getLong("history.segmentBytes", 8L << 20);
+    private static final int MAX_ENTRIES = Integer.getInteger("history.maxEntries", 1000);
+
+    private static final int RECORD_MAGIC = 0x48495354;
+    private static final int INDEX_MAGIC = 0x48494458;
+    private static final int INDEX_HEADER = 16;
+    private static final int INDEX_ENTRY = 40;
+    private static final int RECORD_HEADER = 8;
+
+    public record Entry(int id, long timestamp, long promptHash, boolean compiled) {
+    }
+
+    public record Record(Entry entry, String description, String code, String compileErrors) {
+    }
+
+    private record Location(int segment, long offset, int length) {
+    }
+
+    private final Path dir;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int count;
+
+    private HistoryStore(Path dir) {
+        this.dir = dir;
+    }
+
+    // 默认目录：history.dir，未设置时为用户目录下的 .javafx-generator/history
+    public static HistoryStore openDefault() throws IOException {
+        String configured = System.getProperty("history.dir");
+        return open(configured != null && !configured.isBlank()
+                ? Paths.get(configured)
+                : Paths.get(System.getProperty("user.home"), ".javafx-generator", "history"));
+    }
+
+    public static HistoryStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        HistoryStore store = new HistoryStore(dir);
+        store.lock();
+        try {
+            store.openSegments();
+            store.openIndex();
+            // 索引项（含已删除的）超出保留条数一半以上时顺带压缩
+            if (store.count > MAX_ENTRIES + MAX_ENTRIES / 2) {
+                store.compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    // ================== 写入 ==================
+    public synchronized Entry append(String description, GenerationResult result) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        ByteBuffer record = encode(timestamp, result.compiled(), description, result.code(), result.compileErrors());
+
+        FileChannel segment = activeSegment(record.remaining());
+        int segmentId = segments.lastKey();
+        long offset = segment.size();
+        int length = record.remaining();
+        while (record.hasRemaining()) {
+            segment.write(record, offset + record.position());
+        }
+
+        Entry entry = new Entry(count, timestamp, hash(description), result.compiled());
+        writeIndex(entry, new Location(segmentId, offset, length), false);
+        return entry;
+    }
+
+    public synchronized void delete(Entry entry) {
+        if (entry.id() < count) {
+            index.put(INDEX_HEADER + entry.id() * INDEX_ENTRY + 33, (byte) 1);
+        }
+    }
+
+    // ================== 读取 ==================
+    public synchronized int size() {
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            if (!deleted(i)) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    // 最近的 limit 条，新的在前
+    public synchronized List<Entry> recent(int limit) {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = count - 1; i >= 0 && entries.size() < limit; i--) {
+            if (!deleted(i)) {
+                entries.add(entry(i));
+            }
+        }
+        return entries;
+    }
+
+    public synchronized Record read(Entry entry) throws IOException {
+        Location location = location(entry.id());
+        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+        readFully(location, buffer, 0);
+        return decode(entry, buffer);
+    }
+
+    public synchronized String description(Entry entry) throws IOException {
+        return readDescription(entry);
+    }
+
+    // 只读出每条记录开头的描述，不读代码和编译错误，也不做 CRC 校验，供列表显示
+    public synchronized List<String> descriptions(List<Entry> entries) throws IOException {
+        List<String> descriptions = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            descriptions.add(readDescription(entry));
+        }
+        return descriptions;
+    }
+
+    private String readDescription(Entry entry) throws IOException {
+        Location location = location(entry.id());
+        // magic | 长度 | 时间 | 描述长度
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER + 8 + 4);
+        if (location.length() < head.capacity()) {
+            throw new IOException("历史记录格式错误");
+        }
+        readFully(location, head, 0);
+        int length = head.getInt(RECORD_HEADER + 8);
+        if (head.getInt(0) != RECORD_MAGIC || length < 0 || head.capacity() + (long) length > location.length()) {
+            throw new IOException("历史记录格式错误");
+        }
+        ByteBuffer description = ByteBuffer.allocate(length);
+        readFully(location, description, head.capacity());
+        return new String(description.array(), StandardCharsets.UTF_8);
+    }
+
+    // 从记录的 skip 字节处起读满 buffer，读完后 buffer 已 flip
+    private void readFully(Location location, ByteBuffer buffer, int skip) throws IOException {
+        FileChannel segment = segments.get(location.segment());
+        if (segment == null) {
+            throw new IOException("历史段文件缺失: " + location.segment());
+        }
+        long start = location.offset() + skip;
+        while (buffer.hasRemaining()) {
+            if (segment.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("历史记录被截断");
+            }
+        }
+        buffer.flip();
+    }
+
+    // 在描述和代码中查找包含 query 的记录，新的在前。先在映射的字节上比对 UTF-8 编码后的查询串，
+    // 只有命中的记录才解码成字符串
+    public synchronized List<Entry> search(String query, int limit) throws IOException {
+        byte[] needle = query.getBytes(StandardCharsets.UTF_8);
+        List<Entry> matches = new ArrayList<>();
+        MappedByteBuffer mapped = null;
+        int mappedSegment = -1;
+        for (int i = count - 1; i >= 0 && matches.size() < limit; i--) {
+            if (deleted(i)) {
+                continue;
+            }
+            Location location = location(i);
+            if (location.segment() != mappedSegment) {
+                FileChannel segment = segments.get(location.segment());
+                if (segment == null) {
+                    continue;
+                }
+                mapped = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+                mappedSegment = location.segment();
+            }
+            if (location.offset() + location.length() <= mapped.capacity()
+                    && contains(mapped, (int) location.offset(), location.length(), needle)) {
+                matches.add(entry(i));
+            }
+        }
+        return matches;
+    }
+
+    // ================== 压缩 ==================
+    // 只保留最近 MAX_ENTRIES 条未删除的记录，写入一个新段后替换全部旧段和索引
+    public synchronized void compact() throws IOException {
+        List<Integer> keep = new ArrayList<>();
+        for (int i = count - 1; i >= 0 && keep.size() < MAX_ENTRIES; i--) {
+            if (!deleted(i)) {
+                keep.add(0, i);
+            }
+        }
+
+        int newSegment = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path segmentFile = segmentPath(newSegment);
+        Path indexTmp = dir.resolve("history.idx.tmp");
+        List<Location> locations = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(segmentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long offset = 0;
+            for (int i : keep) {
+                Location location = location(i);
+                FileChannel segment = segments.get(location.segment());
+                if (segment == null) {
+                    continue;
+                }
+                long copied = 0;
+                while (copied < location.length()) {
+                    copied += segment.transferTo(location.offset() + copied, location.length() - copied, out);
+                }
+                Entry old = entry(i);
+                entries.add(new Entry(entries.size(), old.timestamp(), old.promptHash(), old.compiled()));
+                locations.add(new Location(newSegment, offset, location.length()));
+                offset += location.length();
+            }
+            out.force(true);
+        }
+
+        // 新索引先写临时文件再原子替换
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER + entries.size() * INDEX_ENTRY);
+        buffer.putInt(INDEX_MAGIC).putInt(1).putInt(entries.size()).putInt(0);
+        for (int i = 0; i < entries.size(); i++) {
+            putEntry(buffer, entries.get(i), locations.get(i), false);
+        }
+        buffer.flip();
+        try (FileChannel tmp = FileChannel.open(indexTmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                tmp.write(buffer);
+            }
+            tmp.force(true);
+        }
+
+        closeChannels();
+        Files.move(indexTmp, dir.resolve("history.idx"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                int id = segmentId(file);
+                if (id > 0 && id != newSegment) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        openSegments();
+        openIndex();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (index != null) {
+                index.force();
+            }
+            closeChannels();
+        } finally {
+            unlock();
+        }
+    }
+
+    // ================== 进程锁 ==================
+    // 同一 JVM 内重复打开同一目录时 tryLock 抛出 OverlappingFileLockException，同样视为已被占用
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(dir.resolve("history.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException e) {
+            unlock();
+            throw e;
+        }
+        if (lock == null) {
+            unlock();
+            throw new IOException("历史记录目录正被另一个进程使用: " + dir);
+        }
+    }
+
+    private void unlock() throws IOException {
+        if (lockChannel != null) {
+            // 关闭通道会一并释放锁
+            lockChannel.close();
+            lockChannel = null;
+            lock = null;
+        }
+    }
+
+    // ================== 段文件 ==================
+    private void openSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                int id = segmentId(file);
+                if (id > 0) {
+                    segments.put(id, FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                }
+            }
+        }
+    }
+
+    private FileChannel activeSegment(int recordLength) throws IOException {
+        if (segments.isEmpty() || segments.lastEntry().getValue().size() + recordLength > SEGMENT_BYTES) {
+            int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+            segments.put(id, FileChannel.open(segmentPath(id),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+        return segments.lastEntry().getValue();
+    }
+
+    private Path segmentPath(int id) {
+        return dir.resolve(String.format("segment-%05d.log", id));
+    }
+
+    private static int segmentId(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith("segment-") && name.endsWith(".log")) {
+            try {
+                return Integer.parseInt(name.substring(8, name.length() - 4));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    // ================== 索引 ==================
+    private void openIndex() throws IOException {
+        Path file = dir.resolve("history.idx");
+        indexChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = indexChannel.size();
+        boolean valid = size >= INDEX_HEADER;
+        if (valid) {
+            mapIndex(Math.max(size, INDEX_HEADER + 64L * INDEX_ENTRY));
+            count = index.getInt(8);
+            valid = index.getInt(0) == INDEX_MAGIC && count >= 0
+                    && INDEX_HEADER + (long) count * INDEX_ENTRY <= size && lastEntryReadable();
+        }
+        if (!valid) {
+            rebuildIndex();
+        }
+    }
+
+    // 最后一条索引项指向的记录必须完整存在，否则说明上次写入中途崩溃
+    private boolean lastEntryReadable() throws IOException {
+        if (count == 0) {
+            return true;
+        }
+        Location location = location(count - 1);
+        FileChannel segment = segments.get(location.segment());
+        return segment != null && location.offset() + location.length() <= segment.size();
+    }
+
+    // 顺序扫描所有段文件重建索引，遇到不完整或校验失败的记录即停止该段
+    private void rebuildIndex() throws IOException {
+        System.out.println("  重建历史索引: " + dir);
+        mapIndex(INDEX_HEADER + 64L * INDEX_ENTRY);
+        index.putInt(0, INDEX_MAGIC).putInt(4, 1).putInt(8, 0);
+        count = 0;
+        for (var item : segments.entrySet()) {
+            FileChannel segment = item.getValue();
+            MappedByteBuffer mapped = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+            int offset = 0;
+            while (offset + RECORD_HEADER <= mapped.capacity() && mapped.getInt(offset) == RECORD_MAGIC) {
+                int length = RECORD_HEADER + mapped.getInt(offset + 4);
+                if (length < RECORD_HEADER || offset + length > mapped.capacity()) {
+                    break;
+                }
+                ByteBuffer record = mapped.slice(offset, length);
+                Record decoded;
+                try {
+                    decoded = decode(new Entry(count, 0, 0, false), record);
+                } catch (IOException e) {
+                    break;
+                }
+                long timestamp = mapped.getLong(offset + RECORD_HEADER);
+                Entry entry = new Entry(count, timestamp, hash(decoded.description()), decoded.compileErrors() == null);
+                writeIndex(entry, new Location(item.getKey(), offset, length), false);
+                offset += length;
+            }
+        }
+    }
+
+    private void mapIndex(long capacity) throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void writeIndex(Entry entry, Location location, boolean deleted) throws IOException {
+        int position = INDEX_HEADER + entry.id() * INDEX_ENTRY;
+        if (position + INDEX_ENTRY > index.capacity()) {
+            mapIndex(index.capacity() * 2L);
+        }
+        putEntry(index.duplicate().position(position), entry, location, deleted);
+        // 索引项写完后再更新条数，崩溃时最多丢掉最后一条
+        count = entry.id() + 1;
+        index.putInt(8, count);
+    }
+
+    private static void putEntry(ByteBuffer buffer, Entry entry, Location location, boolean deleted) {
+        buffer.putLong(entry.timestamp())
+              .putLong(entry.promptHash())
+              .putLong(location.offset())
+              .putInt(location.segment())
+              .putInt(location.length())
+              .put((byte) (entry.compiled() ? 1 : 0))
+              .put((byte) (deleted ? 1 : 0))
+              .put(new byte[6]);
+    }
+
+    private Entry entry(int id) {
+        int base = INDEX_HEADER + id * INDEX_ENTRY;
+        return new Entry(id, index.getLong(base), index.getLong(base + 8), index.get(base + 32) == 1);
+    }
+
+    private Location location(int id) {
+        int base = INDEX_HEADER + id * INDEX_ENTRY;
+        return new Location(index.getInt(base + 24), index.getLong(base + 16), index.getInt(base + 28));
+    }
+
+    private boolean deleted(int id) {
+        return index.get(INDEX_HEADER + id * INDEX_ENTRY + 33) == 1;
+    }
+
+    private void closeChannels() throws IOException {
+        for (FileChannel channel : segments.values()) {
+            channel.close();
+        }
+        segments.clear();
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+        index = null;
+    }
+
+    // ================== 记录编码 ==================
+    // magic | 长度 | 时间 | 描述 | 代码 | 编译错误（-1 表示无）| CRC32
+    private static ByteBuffer encode(long timestamp, boolean compiled, String description, String code, String errors) {
+        byte[] d = description.getBytes(StandardCharsets.UTF_8);
+        byte[] c = code.getBytes(StandardCharsets.UTF_8);
+        byte[] e = errors == null ? null : errors.getBytes(StandardCharsets.UTF_8);
+        int body = 8 + 4 + d.length + 4 + c.length + 4 + (e == null ? 0 : e.length) + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + body);
+        buffer.putInt(RECORD_MAGIC).putInt(body).putLong(timestamp);
+        buffer.putInt(d.length).put(d).putInt(c.length).put(c);
+        if (e == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(e.length).put(e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER, buffer.position() - RECORD_HEADER);
+        buffer.putInt((int) crc.getValue());
+        return buffer.flip();
+    }
+
+    private static Record decode(Entry entry, ByteBuffer buffer) throws IOException {
+        try {
+            int start = buffer.position();
+            if (buffer.getInt() != RECORD_MAGIC) {
+                throw new IOException("历史记录格式错误");
+            }
+            int body = buffer.getInt();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(start + RECORD_HEADER).limit(start + RECORD_HEADER + body - 4));
+            buffer.getLong();
+            String description = string(buffer);
+            String code = string(buffer);
+            String errors = string(buffer);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                throw new IOException("历史记录校验失败");
+            }
+            return new Record(entry, description, code, errors);
+        } catch (RuntimeException e) {
+            throw new IOException("历史记录格式错误", e);
+        }
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean contains(ByteBuffer haystack, int from, int length, byte[] needle) {
+        if (needle.length == 0) {
+            return true;
+        }
+        int end = from + length - needle.length;
+        outer:
+        for (int i = from; i <= end; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack.get(i + j) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // 描述的 SHA-256 前 8 字节，用于判断是否为同一描述
+    static long hash(String description) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JDK 缺少 SHA-256", e);
+        }
+    }
+}
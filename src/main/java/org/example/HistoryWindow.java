@@ -0,0 +1,169 @@
+package org.example;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// 历史记录窗口：列出最近的生成结果，支持全文搜索、重新打开和删除。
+// 读盘都在后台线程上进行，列表只读出描述、只显示第一行，打开时才读取完整记录。只能在 FX 线程上调用
+final class HistoryWindow {
+
+    private static final int PAGE = 200;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+
+    private record Row(HistoryStore.Entry entry, String description) {
+    }
+
+    private final HistoryStore store;
+    private final Consumer<HistoryStore.Record> onOpen;
+    private Stage stage;
+    private ListView<Row> list;
+    private TextField search;
+    private Label status;
+
+    HistoryWindow(HistoryStore store, Consumer<HistoryStore.Record> onOpen) {
+        this.store = store;
+        this.onOpen = onOpen;
+    }
+
+    void show(Window owner) {
+        if (stage == null) {
+            stage = createStage(owner);
+        }
+        reload();
+        stage.show();
+        stage.toFront();
+    }
+
+    void close() {
+        if (stage != null) {
+            stage.hide();
+        }
+    }
+
+    private Stage createStage(Window owner) {
+        search = new TextField();
+        search.setPromptText("搜索描述或代码，回车确认");
+        search.setOnAction(e -> reload());
+        HBox.setHgrow(search, Priority.ALWAYS);
+
+        list = new ListView<>();
+        list.setPlaceholder(new Label("暂无历史记录"));
+        list.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(Row row, boolean empty) {
+                super.updateItem(row, empty);
+                if (empty || row == null) {
+                    setText(null);
+                    return;
+                }
+                String time = LocalDateTime.ofInstant(Instant.ofEpochMilli(row.entry().timestamp()),
+                        ZoneId.systemDefault()).format(TIME);
+                setText(time + "  " + (row.entry().compiled() ? "✓" : "✗") + "  " + row.description());
+            }
+        });
+        list.setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+                openSelected();
+            }
+        });
+
+        Button open = new Button("打开");
+        open.setOnAction(e -> openSelected());
+        Button delete = new Button("删除");
+        delete.setOnAction(e -> deleteSelected());
+        status = new Label();
+
+        BorderPane root = new BorderPane();
+        root.setTop(new HBox(10, search, open, delete));
+        root.setCenter(list);
+        root.setBottom(status);
+        BorderPane.setMargin(list, new Insets(10, 0, 10, 0));
+        root.setPadding(new Insets(10));
+
+        Stage window = new Stage();
+        window.initOwner(owner);
+        window.setTitle("生成历史");
+        window.setScene(new Scene(root, 560, 420));
+        return window;
+    }
+
+    private void reload() {
+        String query = search.getText() == null ? "" : search.getText().strip();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                List<HistoryStore.Entry> entries = query.isEmpty() ? store.recent(PAGE) : store.search(query, PAGE);
+                List<String> descriptions = store.descriptions(entries);
+                List<Row> rows = new ArrayList<>(entries.size());
+                for (int i = 0; i < entries.size(); i++) {
+                    String description = descriptions.get(i);
+                    int newline = description.indexOf('\n');
+                    rows.add(new Row(entries.get(i), newline < 0 ? description : description.substring(0, newline) + " …"));
+                }
+                return rows;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((rows, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                status.setText("读取历史失败: " + error.getMessage());
+                return;
+            }
+            list.getItems().setAll(rows);
+            status.setText(query.isEmpty()
+                    ? "共 " + store.size() + " 条记录"
+                    : "找到 " + rows.size() + " 条包含 \"" + query + "\" 的记录");
+        }));
+    }
+
+    private void openSelected() {
+        Row row = list.getSelectionModel().getSelectedItem();
+        if (row == null) {
+            return;
+        }
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return store.read(row.entry());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((record, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                status.setText("读取记录失败: " + error.getMessage());
+            } else {
+                onOpen.accept(record);
+            }
+        }));
+    }
+
+    private void deleteSelected() {
+        Row row = list.getSelectionModel().getSelectedItem();
+        if (row != null) {
+            store.delete(row.entry());
+            list.getItems().remove(row);
+            status.setText("已删除");
+        }
+    }
+}
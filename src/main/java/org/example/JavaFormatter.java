@@ -0,0 +1,578 @@
+package org.example;
+
+import org.example.JavaLexer.Kind;
+
+import java.util.Arrays;
+
+// 基于 token 流的 Java 代码格式化器：由 JavaLexer 单遍切分 token，再按 token 重新输出空格、换行和缩进。
+// 字符串、字符、文本块和注释原样保留；源码中已有的换行会被保留（连续空行压缩为一行）。
+// 格式化器本身可以逐个接收 token，流式场景下可以边接收边取走已经完成的行。
+public final class JavaFormatter {
+
+    private static final String INDENT = "    ";
+    private static final int CONTINUATION = 2;
+
+    // ===== 花括号栈 =====
+    private static final int BLOCK = 0;
+    private static final int INLINE = 1;
+    private static final int SWITCH = 2;
+    private static final int BODY = 3;
+
+    private static final int NONE = 0;
+    private static final int PACKAGE = 1;
+    private static final int IMPORT = 2;
+
+    private final StringBuilder out;
+
+    private int[] frameType = new int[16];
+    private int[] frameIndent = new int[16];
+    private int[] frameParen = new int[16];
+    private boolean[] caseOpen = new boolean[16];
+    private int top;
+
+    private int parenDepth;
+    private int genericDepth;
+    // 当前最外层的尖括号是方法调用的显式类型实参（List.<Integer>of），闭合后紧贴方法名
+    private boolean typeArguments;
+
+    // ===== 待输出的换行 =====
+    private int breakPending;
+    private boolean softBreak;
+    private boolean blankAfterMember;
+    private int lastStatement = NONE;
+    private int statementStart = NONE;
+
+    // ===== 上一个 token 的信息 =====
+    private boolean first = true;
+    private Kind prevKind;
+    private String prevOp;
+    private String prevKeyword;
+    private boolean prevGlueRight;
+    private boolean prevOperand;
+    private boolean prevGenericClose;
+    // 上一个 token 是一元的 + 或 -：后面紧跟以 + 或 - 开头的 token 时必须留空格，否则 - -y 会变成 --y
+    private boolean prevUnarySign;
+    // 上一个 token 是语句开头的标识符，紧跟的冒号是标签
+    private boolean prevLabel;
+    private boolean prevOther;
+    private boolean prevFirstUpper;
+    private boolean prevComment;
+    private boolean prevEndsStatement = true;
+    private boolean atStatementStart = true;
+
+    // ===== 语法上下文 =====
+    private boolean switchPending;
+    private boolean typePending;
+    private boolean inCaseLabel;
+    private boolean skipLanguageTag;
+    private int annotationState;
+    private int annotationParen;
+    private boolean annotationBreak;
+
+    public JavaFormatter() {
+        this(256);
+    }
+
+    JavaFormatter(int capacity) {
+        out = new StringBuilder(capacity);
+        frameType[0] = BLOCK;
+    }
+
+    public static String format(String code) {
+        JavaFormatter formatter = new JavaFormatter(code.length() + code.length() / 4);
+        JavaLexer lexer = new JavaLexer(code);
+        while (lexer.next()) {
+            formatter.accept(lexer);
+        }
+        return formatter.finish();
+    }
+
+    // 已输出的内容（最后一行可能尚未完成）
+    StringBuilder output() {
+        return out;
+    }
+
+    public String finish() {
+        int end = out.length();
+        while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    // ================== 接收一个 token ==================
+    void accept(JavaLexer token) {
+        Kind kind = token.kind;
+
+        // Markdown 代码块标记：丢弃，连同紧跟其后的语言名
+        if (kind == Kind.FENCE) {
+            skipLanguageTag = true;
+            if (!first) {
+                breakPending = Math.max(breakPending, 1);
+            }
+            return;
+        }
+        if (skipLanguageTag) {
+            skipLanguageTag = false;
+            if (kind == Kind.WORD && token.newlines == 0 && isWord(token, "java")) {
+                return;
+            }
+        }
+
+        String op = token.op;
+        String keyword = token.keyword;
+        boolean closesBlock = "}" == op && frameType[top] != INLINE;
+        boolean opensBlock = "{" == op && !opensInline();
+
+        // ===== 决定是否换行 =====
+        int lines = breakPending;
+        boolean afterBlock = softBreak;
+        boolean joinsBlock = afterBlock && (")" == op || ";" == op || "," == op
+                || "else" == keyword || "catch" == keyword || "finally" == keyword);
+        boolean ignoreSource = joinsBlock
+                || (("else" == keyword || "catch" == keyword || "finally" == keyword) && "}" == prevOp)
+                || ((";" == op || "," == op || ")" == op) && !prevComment)
+                || (opensBlock && !prevEndsStatement);
+
+        if (joinsBlock) {
+            lines = 0;
+        }
+        if (closesBlock) {
+            lines = "{" == prevOp && !first ? 0 : Math.max(lines, 1);
+        }
+        if (token.newlines > 0 && !ignoreSource) {
+            lines = Math.max(lines, token.newlines > 1 ? 2 : 1);
+        }
+        if (lastStatement == PACKAGE || (lastStatement == IMPORT && "import" != keyword)) {
+            lines = 2;
+        }
+        if (blankAfterMember && !closesBlock && lines > 0) {
+            lines = 2;
+        }
+        if (lines > 1 && ("{" == prevOp || closesBlock)) {
+            lines = 1;
+        }
+        if (annotationState == 3 && ("(" == op || "." == op)) {
+            lines = 0;
+        }
+        if (isComment(kind) && token.newlines == 0) {
+            // 行尾注释留在原来的行上
+            lines = 0;
+        }
+        if (first) {
+            lines = 0;
+        }
+        breakPending = 0;
+        softBreak = false;
+        blankAfterMember = false;
+        lastStatement = NONE;
+
+        boolean caseLabel = frameType[top] == SWITCH && parenDepth == frameParen[top]
+                && ("case" == keyword || "default" == keyword);
+
+        if (lines > 0) {
+            newLine(lines);
+            int level;
+            if ("}" == op) {
+                // 右花括号与打开它的那一行对齐
+                level = frameIndent[top] - 1;
+            } else if (caseLabel) {
+                level = frameIndent[top];
+            } else {
+                level = contentIndent();
+                if (!prevEndsStatement && frameType[top] != INLINE) {
+                    level += CONTINUATION;
+                }
+            }
+            indent(level);
+        } else if (!first && needsSpace(token)) {
+            out.append(' ');
+        }
+
+        // ===== 输出 token =====
+        boolean genericOpen = false;
+        boolean genericClose = false;
+        boolean unary = false;
+
+        switch (kind) {
+            case LINE_COMMENT -> {
+                appendLineComment(token);
+                breakPending = 1;
+            }
+            case BLOCK_COMMENT -> appendBlockComment(token);
+            default -> {
+                if ("<" == op) {
+                    genericOpen = isGenericOpen(token);
+                } else if (genericDepth > 0 && op != null && isAllClose(op)) {
+                    genericClose = true;
+                } else if (("-" == op || "+" == op || "++" == op || "--" == op) && !prevOperand) {
+                    unary = true;
+                }
+                append(token);
+            }
+        }
+
+        if (isComment(kind)) {
+            // 注释不改变语句状态，下一行的缩进仍按注释之前的代码计算
+            prevComment = true;
+            first = false;
+            return;
+        }
+
+        // ===== 更新语法状态 =====
+        boolean endsStatement = false;
+        boolean glueRight = false;
+
+        if (op != null) {
+            switch (op) {
+                case "(" -> {
+                    if (annotationState == 3) {
+                        annotationState = 2;
+                        annotationParen = parenDepth;
+                    }
+                    parenDepth++;
+                    genericDepth = 0;
+                    glueRight = true;
+                }
+                case ")" -> {
+                    parenDepth = Math.max(frameParen[top], parenDepth - 1);
+                    genericDepth = 0;
+                    if (annotationState == 2 && parenDepth == annotationParen) {
+                        annotationState = 0;
+                        endsStatement = true;
+                        if (annotationBreak) {
+                            breakPending = 1;
+                        }
+                    }
+                }
+                case "[", ".", "::", "@", "!", "~" -> glueRight = true;
+                case "{" -> {
+                    genericDepth = 0;
+                    if (opensBlock) {
+                        pushFrame(switchPending ? SWITCH : typePending ? BODY : BLOCK);
+                        breakPending = 1;
+                        endsStatement = true;
+                    } else {
+                        pushFrame(INLINE);
+                        glueRight = true;
+                    }
+                    switchPending = false;
+                    typePending = false;
+                }
+                case "}" -> {
+                    genericDepth = 0;
+                    popFrame();
+                    if (closesBlock) {
+                        breakPending = 1;
+                        softBreak = true;
+                        blankAfterMember = frameType[top] == BODY;
+                        endsStatement = true;
+                    }
+                }
+                case ";" -> {
+                    genericDepth = 0;
+                    if (parenDepth == frameParen[top] && frameType[top] != INLINE) {
+                        breakPending = 1;
+                        endsStatement = true;
+                        lastStatement = statementStart;
+                        switchPending = false;
+                        typePending = false;
+                    }
+                }
+                case ":" -> {
+                    if (inCaseLabel) {
+                        inCaseLabel = false;
+                        caseOpen[top] = true;
+                        breakPending = 1;
+                        endsStatement = true;
+                    } else if (prevLabel) {
+                        // 标签之后的语句另起一行时不按续行缩进
+                        endsStatement = true;
+                    }
+                }
+                case "->" -> inCaseLabel = false;
+                case "=", "&&", "||" -> genericDepth = 0;
+                default -> {
+                }
+            }
+        }
+
+        if (genericOpen) {
+            if (genericDepth == 0) {
+                typeArguments = "." == prevOp;
+            }
+            genericDepth++;
+            glueRight = true;
+        } else if (genericClose) {
+            genericDepth = Math.max(0, genericDepth - op.length());
+            if (genericDepth == 0 && typeArguments) {
+                typeArguments = false;
+                glueRight = true;
+            }
+        } else if (unary) {
+            glueRight = true;
+        }
+
+        if (keyword != null) {
+            if ("switch" == keyword) {
+                switchPending = true;
+            } else if (("class" == keyword || "interface" == keyword || "enum" == keyword || "record" == keyword)
+                    && "." != prevOp && "@" != prevOp) {
+                typePending = true;
+            } else if (caseLabel) {
+                inCaseLabel = true;
+            }
+        }
+        // 注解：1 = 等待注解名，3 = 注解名之后，2 = 注解参数内
+        // 成员上的注解单独占一行
+        if (annotationState == 0 && "@" == op) {
+            annotationState = 1;
+            annotationBreak = atStatementStart && frameType[top] == BODY;
+        } else if (annotationState == 1) {
+            if (kind == Kind.WORD && "interface" != keyword) {
+                annotationState = 3;
+                endsStatement = true;
+                if (annotationBreak) {
+                    breakPending = 1;
+                }
+            } else {
+                annotationState = 0;
+            }
+        } else if (annotationState == 3) {
+            annotationState = "." == op ? 1 : 0;
+        }
+
+        prevLabel = atStatementStart && kind == Kind.WORD && keyword == null;
+        if (atStatementStart) {
+            statementStart = "package" == keyword ? PACKAGE : "import" == keyword ? IMPORT : NONE;
+        }
+        atStatementStart = endsStatement;
+
+        prevKind = kind;
+        prevOp = op;
+        prevKeyword = keyword;
+        prevGlueRight = glueRight;
+        prevGenericClose = genericClose;
+        prevUnarySign = unary && ("-" == op || "+" == op);
+        prevOther = kind == Kind.OTHER;
+        prevOperand = isOperand(token, unary) || genericClose;
+        prevEndsStatement = endsStatement;
+        prevComment = false;
+        first = false;
+    }
+
+    // ================== 空格规则 ==================
+    private boolean needsSpace(JavaLexer token) {
+        if (prevOther || token.kind == Kind.OTHER) {
+            return token.space;
+        }
+        String op = token.op;
+        if (prevUnarySign && op != null && (op.charAt(0) == '-' || op.charAt(0) == '+')) {
+            return true;
+        }
+        if (prevGlueRight) {
+            return false;
+        }
+        if (op == null) {
+            return true;
+        }
+        switch (op) {
+            case ";", ",", ")", "]", ".", "::", "...", "[" -> {
+                return false;
+            }
+            case "(" -> {
+                boolean call = (prevKind == Kind.WORD && !isControl(prevKeyword))
+                        || prevGenericClose || "]" == prevOp;
+                return !call;
+            }
+            case "++", "--" -> {
+                return !prevOperand;
+            }
+            case "<" -> {
+                return isModifier(prevKeyword) || !isGenericOpen(token);
+            }
+            case ":" -> {
+                return !inCaseLabel && !prevLabel;
+            }
+            case "}" -> {
+                return !("{" == prevOp) && frameType[top] != INLINE;
+            }
+            default -> {
+                if (genericDepth > 0 && isAllClose(op)) {
+                    return false;
+                }
+                return true;
+            }
+        }
+    }
+
+    private boolean isGenericOpen(JavaLexer token) {
+        if ("." == prevOp) {
+            return true;
+        }
+        if (genericDepth > 0 && ("<" == prevOp || "," == prevOp || "&" == prevOp)) {
+            return true;
+        }
+        if (isModifier(prevKeyword)) {
+            return true;
+        }
+        return !token.space && prevKind == Kind.WORD && prevKeyword == null && prevFirstUpper;
+    }
+
+    private boolean opensInline() {
+        return "=" == prevOp || "]" == prevOp || "(" == prevOp
+                || ("," == prevOp && frameType[top] == INLINE)
+                || ("{" == prevOp && frameType[top] == INLINE);
+    }
+
+    private boolean isOperand(JavaLexer token, boolean unary) {
+        switch (token.kind) {
+            case WORD -> {
+                String keyword = token.keyword;
+                return keyword == null || "this" == keyword || "super" == keyword
+                        || "true" == keyword || "false" == keyword || "null" == keyword;
+            }
+            case NUMBER, STRING, CHAR, TEXT_BLOCK -> {
+                return true;
+            }
+            case OP -> {
+                String op = token.op;
+                return ")" == op || "]" == op || (("++" == op || "--" == op) && !unary);
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isControl(String keyword) {
+        if (keyword == null) {
+            return false;
+        }
+        switch (keyword) {
+            case "if", "for", "while", "switch", "catch", "synchronized", "try", "return",
+                 "throw", "case", "assert", "yield", "else", "do", "instanceof" -> {
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isModifier(String keyword) {
+        if (keyword == null) {
+            return false;
+        }
+        switch (keyword) {
+            case "public", "private", "protected", "static", "final", "abstract",
+                 "synchronized", "default", "native" -> {
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isAllClose(String op) {
+        return ">" == op || ">>" == op || ">>>" == op;
+    }
+
+    private static boolean isComment(Kind kind) {
+        return kind == Kind.LINE_COMMENT || kind == Kind.BLOCK_COMMENT;
+    }
+
+    private static boolean isWord(JavaLexer token, String word) {
+        if (token.length() != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toLowerCase(token.charAt(i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ================== 输出 ==================
+    private void append(JavaLexer token) {
+        out.append(token.source(), token.start, token.end);
+        prevFirstUpper = token.firstUpper();
+    }
+
+    private void appendLineComment(JavaLexer token) {
+        CharSequence source = token.source();
+        out.append("//");
+        int start = token.start + 2;
+        if (start < token.end && source.charAt(start) != ' ' && source.charAt(start) != '/') {
+            out.append(' ');
+        }
+        out.append(source, start, token.end);
+    }
+
+    // 多行块注释：以 * 开头的续行与注释起始位置对齐，其余行原样保留
+    private void appendBlockComment(JavaLexer token) {
+        CharSequence source = token.source();
+        int level = contentIndent();
+        int lineStart = token.start;
+        for (int i = token.start; i < token.end; i++) {
+            if (source.charAt(i) != '\n') {
+                continue;
+            }
+            out.append(source, lineStart, i).append('\n');
+            int j = i + 1;
+            while (j < token.end && (source.charAt(j) == ' ' || source.charAt(j) == '\t')) {
+                j++;
+            }
+            if (j < token.end && source.charAt(j) == '*') {
+                indent(level);
+                out.append(' ');
+                lineStart = j;
+            } else {
+                lineStart = i + 1;
+            }
+        }
+        out.append(source, lineStart, token.end);
+    }
+
+    private void newLine(int lines) {
+        for (int i = 0; i < lines; i++) {
+            out.append('\n');
+        }
+    }
+
+    private void indent(int level) {
+        for (int i = 0; i < level; i++) {
+            out.append(INDENT);
+        }
+    }
+
+    private int contentIndent() {
+        return frameIndent[top] + (caseOpen[top] ? 1 : 0);
+    }
+
+    private void pushFrame(int type) {
+        int indent = contentIndent() + 1;
+        if (++top == frameType.length) {
+            int size = top * 2;
+            frameType = Arrays.copyOf(frameType, size);
+            frameIndent = Arrays.copyOf(frameIndent, size);
+            frameParen = Arrays.copyOf(frameParen, size);
+            caseOpen = Arrays.copyOf(caseOpen, size);
+        }
+        frameType[top] = type;
+        frameIndent[top] = indent;
+        frameParen[top] = parenDepth;
+        caseOpen[top] = false;
+    }
+
+    private void popFrame() {
+        if (top == 0) {
+            return;
+        }
+        parenDepth = frameParen[top];
+        top--;
+    }
+}
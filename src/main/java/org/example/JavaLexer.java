@@ -0,0 +1,287 @@
+package org.example;
+
+// 单遍 Java 词法分析器：只记录当前 token 在源文本中的区间，不为每个 token 分配字符串。
+// 运算符和关键字映射到常量字符串，调用方可以直接用 == 比较。
+// 支持流式输入：last=false 时，触及缓冲区末尾的 token 视为不完整，等待更多数据后再识别。
+final class JavaLexer {
+
+    enum Kind { WORD, NUMBER, STRING, CHAR, TEXT_BLOCK, LINE_COMMENT, BLOCK_COMMENT, OP, FENCE, OTHER }
+
+    // 按长度从长到短排列，保证最长匹配
+    private static final String[] OPERATORS = {
+            ">>>=", "<<=", ">>=", ">>>", "...", "->", "::", "++", "--", "&&", "||",
+            "==", "!=", "<=", ">=", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "<<", ">>",
+            "(", ")", "{", "}", "[", "]", ";", ",", ".", "@", "=", ">", "<", "!", "~", "?", ":",
+            "+", "-", "*", "/", "&", "|", "^", "%"
+    };
+
+    private static final String[] KEYWORDS = {
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class",
+            "const", "continue", "default", "do", "double", "else", "enum", "extends", "final",
+            "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int",
+            "interface", "long", "native", "new", "package", "private", "protected", "public",
+            "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "var", "yield",
+            "record", "true", "false", "null"
+    };
+
+    private CharSequence source;
+    private int limit;
+    private int pos;
+
+    // ===== 当前 token =====
+    Kind kind;
+    int start;
+    int end;
+    // token 之前的空白中包含的换行数，以及是否有空白
+    int newlines;
+    boolean space;
+    // OP 类型时为常量运算符，WORD 类型且为关键字时为常量关键字，否则为 null
+    String op;
+    String keyword;
+
+    JavaLexer(CharSequence source) {
+        reset(source, 0, source.length());
+    }
+
+    void reset(CharSequence source, int from, int limit) {
+        this.source = source;
+        this.pos = from;
+        this.limit = limit;
+    }
+
+    // 下一个 token 的起始扫描位置（流式模式下用于丢弃已处理的前缀）
+    int position() {
+        return pos;
+    }
+
+    boolean next() {
+        return next(true);
+    }
+
+    // 读取下一个 token；没有完整 token 时返回 false 且不移动位置
+    boolean next(boolean last) {
+        int mark = pos;
+        int lines = 0;
+        boolean ws = false;
+        while (pos < limit && isSkippable(source.charAt(pos))) {
+            if (source.charAt(pos) == '\n') {
+                lines++;
+            }
+            ws = true;
+            pos++;
+        }
+        if (pos >= limit) {
+            pos = last ? pos : mark;
+            return false;
+        }
+
+        newlines = lines;
+        space = ws;
+        start = pos;
+        op = null;
+        keyword = null;
+
+        int tokenEnd = scan(last);
+        if (tokenEnd < 0) {
+            pos = mark;
+            return false;
+        }
+        end = tokenEnd;
+        pos = tokenEnd;
+        return true;
+    }
+
+    int length() {
+        return end - start;
+    }
+
+    char charAt(int index) {
+        return source.charAt(start + index);
+    }
+
+    CharSequence source() {
+        return source;
+    }
+
+    boolean firstUpper() {
+        return kind == Kind.WORD && Character.isUpperCase(source.charAt(start));
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(start, end).toString();
+    }
+
+    // 返回 token 结束位置；不完整时返回 -1
+    private int scan(boolean last) {
+        char c = source.charAt(pos);
+
+        if (Character.isJavaIdentifierStart(c)) {
+            int i = pos + 1;
+            while (i < limit && Character.isJavaIdentifierPart(source.charAt(i)) && !isSkippable(source.charAt(i))) {
+                i++;
+            }
+            if (i >= limit && !last) {
+                return -1;
+            }
+            kind = Kind.WORD;
+            keyword = lookup(KEYWORDS, pos, i);
+            return i;
+        }
+
+        if (isDigit(c) || (c == '.' && pos + 1 < limit && isDigit(source.charAt(pos + 1)))) {
+            int i = pos + 1;
+            while (i < limit) {
+                char d = source.charAt(i);
+                if (Character.isLetterOrDigit(d) || d == '.' || d == '_') {
+                    i++;
+                } else if ((d == '+' || d == '-') && isExponent(source.charAt(i - 1), source.charAt(pos))) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            if (i >= limit && !last) {
+                return -1;
+            }
+            kind = Kind.NUMBER;
+            return i;
+        }
+
+        if (c == '"') {
+            if (startsWith(pos, "\"\"\"")) {
+                kind = Kind.TEXT_BLOCK;
+                int close = indexOf("\"\"\"", pos + 3, true);
+                return close < 0 ? (last ? limit : -1) : close + 3;
+            }
+            if (pos + 2 >= limit && !last) {
+                // 可能是文本块的开头，等待更多字符
+                return -1;
+            }
+            kind = Kind.STRING;
+            return quoted('"', last);
+        }
+
+        if (c == '\'') {
+            kind = Kind.CHAR;
+            return quoted('\'', last);
+        }
+
+        if (c == '/' && pos + 1 < limit) {
+            char n = source.charAt(pos + 1);
+            if (n == '/') {
+                kind = Kind.LINE_COMMENT;
+                int i = pos + 2;
+                while (i < limit && source.charAt(i) != '\n' && source.charAt(i) != '\r') {
+                    i++;
+                }
+                return i >= limit && !last ? -1 : i;
+            }
+            if (n == '*') {
+                kind = Kind.BLOCK_COMMENT;
+                int close = indexOf("*/", pos + 2, false);
+                return close < 0 ? (last ? limit : -1) : close + 2;
+            }
+        } else if (c == '/' && !last) {
+            return -1;
+        }
+
+        if (c == '`') {
+            int i = pos;
+            while (i < limit && source.charAt(i) == '`') {
+                i++;
+            }
+            if (i >= limit && !last) {
+                return -1;
+            }
+            kind = i - pos >= 3 ? Kind.FENCE : Kind.OTHER;
+            return i;
+        }
+
+        for (String candidate : OPERATORS) {
+            if (startsWith(pos, candidate)) {
+                // 更长的运算符可能被截断在缓冲区末尾
+                if (!last && pos + 4 > limit && candidate.length() < 4 && isOperatorChar(c)) {
+                    return -1;
+                }
+                kind = Kind.OP;
+                op = candidate;
+                return pos + candidate.length();
+            }
+        }
+
+        kind = Kind.OTHER;
+        return pos + 1;
+    }
+
+    private int quoted(char delimiter, boolean last) {
+        int i = pos + 1;
+        while (i < limit) {
+            char d = source.charAt(i);
+            if (d == '\\') {
+                i += 2;
+            } else if (d == delimiter) {
+                return i + 1;
+            } else if (d == '\n') {
+                // 未闭合的字面量在行尾截断，避免吞掉后面的代码
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return last ? limit : -1;
+    }
+
+    private int indexOf(String needle, int from, boolean skipEscapes) {
+        for (int i = from; i + needle.length() <= limit; i++) {
+            if (skipEscapes && source.charAt(i) == '\\') {
+                i++;
+            } else if (startsWith(i, needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int at, String text) {
+        if (at + text.length() > limit) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (source.charAt(at + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String lookup(String[] table, int from, int to) {
+        int length = to - from;
+        for (String candidate : table) {
+            if (candidate.length() == length && startsWith(from, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isExponent(char previous, char first) {
+        boolean hex = first == '0';
+        return previous == 'e' || previous == 'E' || (hex && (previous == 'p' || previous == 'P'));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isOperatorChar(char c) {
+        return "<>=!&|+-*/%^.:".indexOf(c) >= 0;
+    }
+
+    // 空白、控制字符以及 BOM/替换字符/私有区字符在代码中都视为空白
+    private static boolean isSkippable(char c) {
+        return c <= ' ' || c == '\u007F' || c == '\uFEFF' || c == '\uFFFD'
+                || (c >= '\uE000' && c <= '\uF8FF') || Character.isSpaceChar(c);
+    }
+}
@@ -0,0 +1,134 @@
+package org.example;
+
+import javafx.application.Application;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.lang.ref.Cleaner;
+import java.util.HashMap;
+import java.util.Map;
+
+// 实时预览：把内存编译出的字节码装进一次性的子 ClassLoader，在单独的窗口里运行生成的 Application。
+// 同一时刻只保留一个预览；关闭窗口或打开新预览时调用 Application.stop() 并丢弃加载器，
+// 生成的类随加载器一起被回收，反复预览不会让 Metaspace 持续增长。只能在 FX 线程上调用
+public final class LivePreview {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private Stage stage;
+    private Application application;
+    private PreviewClassLoader loader;
+
+    public void show(CompileResult compiled, Window owner) throws Exception {
+        if (!compiled.success() || compiled.className() == null) {
+            throw new IllegalArgumentException("代码未通过编译，无法预览");
+        }
+        close();
+
+        PreviewClassLoader previewLoader = new PreviewClassLoader(compiled.classBytes());
+        Metrics.get().counter("preview_loaders_created").increment();
+        Metrics.Counter unloaded = Metrics.get().counter("preview_loaders_unloaded");
+        CLEANER.register(previewLoader, unloaded::increment);
+
+        Class<?> mainClass = previewLoader.loadClass(compiled.className());
+        if (!Application.class.isAssignableFrom(mainClass)) {
+            previewLoader.dispose();
+            throw new IllegalArgumentException(compiled.className() + " 不是 javafx.application.Application 的子类");
+        }
+
+        Stage previewStage = new Stage();
+        previewStage.initOwner(owner);
+        previewStage.setTitle("预览 - " + compiled.className());
+        previewStage.setOnHidden(e -> {
+            if (stage == previewStage) {
+                close();
+            }
+        });
+
+        loader = previewLoader;
+        stage = previewStage;
+        try {
+            application = (Application) mainClass.getDeclaredConstructor().newInstance();
+            application.init();
+            application.start(previewStage);
+            if (!previewStage.isShowing()) {
+                previewStage.show();
+            }
+        } catch (Exception | LinkageError e) {
+            close();
+            throw e instanceof Exception ex ? ex : new IllegalStateException(e);
+        }
+    }
+
+    // 关闭当前预览并释放它的类加载器
+    public void close() {
+        Stage closing = stage;
+        Application app = application;
+        PreviewClassLoader previewLoader = loader;
+        stage = null;
+        application = null;
+        loader = null;
+
+        if (closing != null && closing.isShowing()) {
+            closing.hide();
+        }
+        if (app != null) {
+            try {
+                app.stop();
+            } catch (Exception e) {
+                System.out.println("  预览程序 stop() 异常: " + e.getMessage());
+            }
+        }
+        if (previewLoader != null) {
+            previewLoader.dispose();
+        }
+    }
+
+    // ================== 一次性类加载器 ==================
+    // 生成的类优先从自己的字节码加载（即使与本程序的类同名），其余委托给应用类加载器以共享 JavaFX
+    private static final class PreviewClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        PreviewClassLoader(Map<String, byte[]> classes) {
+            super("preview", LivePreview.class.getClassLoader());
+            this.classes = new HashMap<>(classes);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null && classes.containsKey(name)) {
+                    loaded = findClass(name);
+                }
+                if (loaded == null) {
+                    return super.loadClass(name, resolve);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes;
+            synchronized (classes) {
+                bytes = classes.get(name);
+            }
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        // 已定义的类由 JVM 持有，这里只释放尚未加载的字节码
+        void dispose() {
+            synchronized (classes) {
+                classes.clear();
+            }
+        }
+    }
+}
@@ -7,12 +7,20 @@ import javafx.stage.Stage;
 
 public class Main extends Application {
 
+    // 整个应用共享一个生成后端（默认星火，-Dspark.backend=mock 时为本地模拟服务），在 stop() 中统一释放
+    private final CodeGenerationBackend backend = CodeGenerationBackend.create();
+    private UIController controller;
+    private MetricsExporter metrics;
+
     @Override
     public void start(Stage primaryStage) {
 
 
+        // JMX 指标始终可用，-Dmetrics.port / -Dmetrics.dumpFile 时另外导出 Prometheus 文本
+        metrics = MetricsExporter.start();
+
         // 创建控制器和界面
-        UIController controller = new UIController();
+        controller = new UIController(backend);
         Scene scene = new Scene(controller.createView(), 1000, 700);
 
         // 配置主窗口
@@ -24,12 +32,28 @@ public class Main extends Application {
         // 显示窗口
         primaryStage.show();
 
+        // 窗口显示后在后台预热网络、加密、编译器和格式化器，缩短首次生成的耗时
+        Prewarmer.start();
+
         // 窗口关闭确认
         primaryStage.setOnCloseRequest(event -> {
             System.out.println("程序关闭 - AI JavaFX 代码生成器");
         });
     }
 
+    @Override
+    public void stop() {
+        // 先取消进行中的生成，再释放共享的 HTTP 连接池和线程池
+        if (controller != null) {
+            controller.shutdown();
+        }
+        backend.shutdown();
+        CompilerService.getDefault().close();
+        if (metrics != null) {
+            metrics.close();
+        }
+    }
+
     public static void main(String[] args) {
         // 添加启动日志
         System.out.println("AI JavaFX 代码生成器启动");
@@ -0,0 +1,78 @@
+package org.example;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 纯内存的文件管理器：源码来自字符串，编译产物写入字节数组，全程不落盘。
+// 每次编译使用独立实例，因此并发编译同名类也不会互相覆盖。
+public class MemoryJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+    private final Map<String, ClassFile> classes = new LinkedHashMap<>();
+
+    public MemoryJavaFileManager(JavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    public static JavaFileObject source(String className, String code) {
+        return new SourceFile(className, code);
+    }
+
+    // 编译得到的类字节码，键为二进制类名（内部类形如 Outer$Inner）
+    public Map<String, byte[]> classBytes() {
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, ClassFile> entry : classes.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().bytes.toByteArray());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                               JavaFileObject.Kind kind, FileObject sibling) {
+        ClassFile file = new ClassFile(className, kind);
+        classes.put(className, file);
+        return file;
+    }
+
+    @Override
+    public void close() {
+        // 底层文件管理器由调用方管理，这里只丢弃内存中的产物
+        classes.clear();
+    }
+
+    // ================== 内存源码 ==================
+    private static final class SourceFile extends SimpleJavaFileObject {
+
+        private final String code;
+
+        SourceFile(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    // ================== 内存字节码 ==================
+    private static final class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className, Kind kind) {
+            super(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+}
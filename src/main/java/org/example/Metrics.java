@@ -0,0 +1,127 @@
+package org.example;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// 进程内指标注册表：计数器和带直方图的计时器，按名字惰性创建，记录路径上只有 LongAdder 累加。
+// 名字可带 Prometheus 风格的标签，例如 spark_errors{kind="NETWORK"}；导出见 MetricsExporter
+public final class Metrics {
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public static Metrics get() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public Map<String, Long> counterValues() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.value()));
+        return values;
+    }
+
+    public Map<String, Timer> timers() {
+        return new TreeMap<>(timers);
+    }
+
+    // 缓存命中率，没有查询过时为 0
+    public double cacheHitRate() {
+        long hits = counter("cache_hits").value();
+        long total = hits + counter("cache_misses").value();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    // ================== 指标类型 ==================
+    public static final class Counter {
+
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        public long value() {
+            return value.sum();
+        }
+    }
+
+    public static final class Timer {
+
+        // 直方图桶上界（秒），覆盖从亚毫秒的编译缓存命中到几十秒的远程生成
+        static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Timer() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos) {
+            count.increment();
+            sumNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            double seconds = nanos / 1e9;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    return;
+                }
+            }
+        }
+
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double sumSeconds() {
+            return sumNanos.sum() / 1e9;
+        }
+
+        public double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : sumNanos.sum() / 1e6 / n;
+        }
+
+        public double maxMillis() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos.get()) / 1000.0;
+        }
+
+        // 各桶的累计计数（不含 +Inf）
+        long[] cumulativeBuckets() {
+            long[] cumulative = new long[BUCKETS.length];
+            long running = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                running += buckets[i].sum();
+                cumulative[i] = running;
+            }
+            return cumulative;
+        }
+    }
+}
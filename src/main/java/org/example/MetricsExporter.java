@@ -0,0 +1,171 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// 指标导出：始终注册 JMX MBean；配置了 metrics.port 时在 127.0.0.1 上提供 Prometheus 文本格式的 /metrics，
+// 配置了 metrics.dumpFile 时在关闭时把同样的文本写入文件（适合批量任务）
+public final class MetricsExporter implements MetricsMXBean, Closeable {
+
+    private static final int PORT = Integer.getInteger("metrics.port", 0);
+    private static final String DUMP_FILE = System.getProperty("metrics.dumpFile");
+
+    private final Metrics metrics;
+    private ObjectName objectName;
+    private HttpServer server;
+
+    private MetricsExporter(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // 按系统属性启动各个导出方式；失败只打印提示，不影响主流程
+    public static MetricsExporter start() {
+        MetricsExporter exporter = new MetricsExporter(Metrics.get());
+        try {
+            MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("org.example:type=Metrics");
+            if (!mbeans.isRegistered(name)) {
+                mbeans.registerMBean(exporter, name);
+                exporter.objectName = name;
+            }
+        } catch (JMException e) {
+            System.out.println("  注册 JMX 指标失败: " + e.getMessage());
+        }
+        if (PORT > 0) {
+            try {
+                HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), PORT), 0);
+                server.createContext("/metrics", exchange -> {
+                    byte[] body = exporter.getPrometheusText().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                server.start();
+                exporter.server = server;
+                System.out.println("指标地址: http://127.0.0.1:" + PORT + "/metrics");
+            } catch (IOException e) {
+                System.out.println("  启动指标服务失败: " + e.getMessage());
+            }
+        }
+        return exporter;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ignored) {
+                // 退出时忽略
+            }
+        }
+        if (DUMP_FILE != null && !DUMP_FILE.isBlank()) {
+            Path file = Paths.get(DUMP_FILE);
+            try {
+                Files.writeString(file, getPrometheusText(), StandardCharsets.UTF_8);
+                System.out.println("指标已写入: " + file.toAbsolutePath());
+            } catch (IOException e) {
+                System.out.println("  写入指标文件失败: " + e.getMessage());
+            }
+        }
+    }
+
+    // ================== MXBean ==================
+    @Override
+    public Map<String, Long> getCounters() {
+        return metrics.counterValues();
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        metrics.timers().forEach((name, timer) -> values.put(name, timer.meanMillis()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        metrics.timers().forEach((name, timer) -> values.put(name, timer.maxMillis()));
+        return values;
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        return metrics.cacheHitRate();
+    }
+
+    // ================== Prometheus 文本格式 ==================
+    @Override
+    public String getPrometheusText() {
+        StringBuilder sb = new StringBuilder();
+        String lastType = null;
+        for (Map.Entry<String, Long> entry : metrics.counterValues().entrySet()) {
+            String base = baseName(entry.getKey()) + "_total";
+            if (!base.equals(lastType)) {
+                sb.append("# TYPE ").append(base).append(" counter\n");
+                lastType = base;
+            }
+            sb.append(base).append(labels(entry.getKey(), null)).append(' ').append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Metrics.Timer> entry : metrics.timers().entrySet()) {
+            String name = entry.getKey();
+            Metrics.Timer timer = entry.getValue();
+            String base = baseName(name) + "_seconds";
+            if (!base.equals(lastType)) {
+                sb.append("# TYPE ").append(base).append(" histogram\n");
+                lastType = base;
+            }
+            long[] cumulative = timer.cumulativeBuckets();
+            for (int i = 0; i < cumulative.length; i++) {
+                sb.append(base).append("_bucket").append(labels(name, format(Metrics.Timer.BUCKETS[i])))
+                  .append(' ').append(cumulative[i]).append('\n');
+            }
+            sb.append(base).append("_bucket").append(labels(name, "+Inf")).append(' ').append(timer.count()).append('\n');
+            sb.append(base).append("_sum").append(labels(name, null)).append(' ').append(format(timer.sumSeconds())).append('\n');
+            sb.append(base).append("_count").append(labels(name, null)).append(' ').append(timer.count()).append('\n');
+        }
+        sb.append("# TYPE cache_hit_ratio gauge\n")
+          .append("cache_hit_ratio ").append(format(metrics.cacheHitRate())).append('\n');
+        return sb.toString();
+    }
+
+    private static String baseName(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name : name.substring(0, brace);
+    }
+
+    // 原有标签再加上可选的 le 标签
+    private static String labels(String name, String le) {
+        int brace = name.indexOf('{');
+        String existing = brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+        if (le == null) {
+            return existing.isEmpty() ? "" : "{" + existing + "}";
+        }
+        return "{" + (existing.isEmpty() ? "" : existing + ",") + "le=\"" + le + "\"}";
+    }
+
+    private static String format(double value) {
+        return Double.toString(value);
+    }
+}
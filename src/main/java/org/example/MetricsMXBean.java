@@ -0,0 +1,18 @@
+package org.example;
+
+import java.util.Map;
+
+// 通过 JMX（jconsole / VisualVM）查看的指标视图，ObjectName 为 org.example:type=Metrics
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    // 各计时器的平均耗时（毫秒）
+    Map<String, Double> getMeanMillis();
+
+    Map<String, Double> getMaxMillis();
+
+    double getCacheHitRate();
+
+    String getPrometheusText();
+}
@@ -0,0 +1,324 @@
+package org.example;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// 进程内的星火 WebSocket 替身：在 127.0.0.1 上完成 WebSocket 握手，读取一次请求后按设定的延迟逐帧回放响应。
+// 走的是和真实服务完全相同的 SparkClient 路径（握手、鉴权 URL、帧解析），用于无网络环境下的吞吐和延迟测试。
+//
+// 可配置项（系统属性）：
+//   mock.frames         录制的响应帧文件（每行一帧 JSON），不设置则把内置示例代码切片成帧
+//   mock.chunkSize      内置示例切片时每帧的字符数，默认 64
+//   mock.firstFrameMs   收到请求到第一帧的延迟，默认 300
+//   mock.frameMs        相邻两帧之间的延迟，默认 20
+public class MockSparkServer implements Closeable {
+
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    static final String SAMPLE_CODE = """
+            ```java
+            import javafx.application.Application;
+            import javafx.geometry.Insets;
+            import javafx.scene.Scene;
+            import javafx.scene.control.*;
+            import javafx.scene.layout.GridPane;
+            import javafx.stage.Stage;
+
+            public class LoginForm extends Application {
+                @Override
+                public void start(Stage stage) {
+                    GridPane grid = new GridPane();
+                    grid.setPadding(new Insets(20));
+                    grid.setHgap(10);
+                    grid.setVgap(10);
+                    TextField user = new TextField();
+                    PasswordField pass = new PasswordField();
+                    Button login = new Button("登录");
+                    Label message = new Label();
+                    login.setOnAction(e -> message.setText("欢迎, " + user.getText()));
+                    grid.add(new Label("用户名:"), 0, 0);
+                    grid.add(user, 1, 0);
+                    grid.add(new Label("密码:"), 0, 1);
+                    grid.add(pass, 1, 1);
+                    grid.add(login, 1, 2);
+                    grid.add(message, 1, 3);
+                    stage.setTitle("登录");
+                    stage.setScene(new Scene(grid, 320, 200));
+                    stage.show();
+                }
+
+                public static void main(String[] args) {
+                    launch(args);
+                }
+            }
+            ```
+            """;
+
+    private final List<String> frames;
+    private final long firstFrameMillis;
+    private final long frameMillis;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "mock-spark");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MockSparkServer(List<String> frames, long firstFrameMillis, long frameMillis) throws IOException {
+        this.frames = List.copyOf(frames);
+        this.firstFrameMillis = firstFrameMillis;
+        this.frameMillis = frameMillis;
+        this.serverSocket = new ServerSocket(0, 512, InetAddress.getLoopbackAddress());
+        workers.execute(this::acceptLoop);
+    }
+
+    // 按系统属性启动替身服务，并返回一个连到它的 SparkClient
+    static CodeGenerationBackend startBackend() {
+        try {
+            String recording = System.getProperty("mock.frames");
+            List<String> frames = recording != null
+                    ? readRecording(Paths.get(recording))
+                    : framesFor(SAMPLE_CODE, Integer.getInteger("mock.chunkSize", 64));
+            MockSparkServer server = new MockSparkServer(frames,
+                    Long.getLong("mock.firstFrameMs", 300), Long.getLong("mock.frameMs", 20));
+            System.out.println("使用本地模拟星火服务: " + server.url());
+            return new Backend(server, new SparkClient(server.url(), "mock", "mock", "mock"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法启动模拟服务", e);
+        }
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/v1/x1";
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+
+    // ================== 帧数据 ==================
+    // 把一段内容切片成星火格式的响应帧：首帧 status=0，中间帧 1，末帧 2
+    public static List<String> framesFor(String content, int chunkSize) {
+        List<String> frames = new ArrayList<>();
+        int count = Math.max(1, (content.length() + chunkSize - 1) / chunkSize);
+        for (int i = 0; i < count; i++) {
+            String chunk = content.substring(i * chunkSize, Math.min(content.length(), (i + 1) * chunkSize));
+            int status = i == count - 1 ? 2 : i == 0 ? 0 : 1;
+            frames.add(frame(i, status, chunk, status == 2 ? content.length() / 4 : 0));
+        }
+        return frames;
+    }
+
+    // completionTokens > 0 时附带末帧的 usage 用量（粗略按 4 个字符一个 token）
+    private static String frame(int seq, int status, String content, int completionTokens) {
+        JSONObject payload = new JSONObject()
+                .fluentPut("choices", new JSONObject()
+                        .fluentPut("status", status)
+                        .fluentPut("seq", seq)
+                        .fluentPut("text", new JSONArray()
+                                .fluentAdd(new JSONObject()
+                                        .fluentPut("content", content)
+                                        .fluentPut("role", "assistant")
+                                        .fluentPut("index", 0))));
+        if (completionTokens > 0) {
+            payload.put("usage", new JSONObject()
+                    .fluentPut("text", new JSONObject()
+                            .fluentPut("prompt_tokens", 200)
+                            .fluentPut("completion_tokens", completionTokens)
+                            .fluentPut("total_tokens", 200 + completionTokens)));
+        }
+        return new JSONObject()
+                .fluentPut("header", new JSONObject()
+                        .fluentPut("code", 0)
+                        .fluentPut("message", "Success")
+                        .fluentPut("sid", "mock" + seq)
+                        .fluentPut("status", status))
+                .fluentPut("payload", payload)
+                .toJSONString();
+    }
+
+    public static List<String> readRecording(Path file) throws IOException {
+        List<String> frames = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                frames.add(line.trim());
+            }
+        }
+        return frames;
+    }
+
+    // ================== WebSocket 服务端 ==================
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // 服务关闭
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            String key = null;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = line.substring(colon + 1).trim();
+                }
+            }
+            if (key == null) {
+                out.write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return;
+            }
+
+            String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                    .digest((key + GUID).getBytes(StandardCharsets.US_ASCII)));
+            out.write(("HTTP/1.1 101 Switching Protocols\r\n" +
+                    "Upgrade: websocket\r\n" +
+                    "Connection: Upgrade\r\n" +
+                    "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            // 等待客户端发来请求帧（内容不校验）
+            if (readFrame(in) != 0x1) {
+                return;
+            }
+
+            Thread.sleep(firstFrameMillis);
+            for (int i = 0; i < frames.size(); i++) {
+                if (i > 0 && frameMillis > 0) {
+                    Thread.sleep(frameMillis);
+                }
+                writeFrame(out, 0x1, frames.get(i).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+
+            // 完成关闭握手：等客户端的 close 帧（期间忽略 ping 等控制帧），再回一个 close 帧
+            int opcode;
+            while ((opcode = readFrame(in)) != 0x8 && opcode != -1) {
+                // 忽略
+            }
+            writeFrame(out, 0x8, new byte[]{0x03, (byte) 0xE8});
+            out.flush();
+        } catch (SocketException | EOFException e) {
+            // 客户端取消或断开
+        } catch (InterruptedException e) {
+            // 服务关闭
+            Thread.currentThread().interrupt();
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            System.out.println("  模拟服务处理连接失败: " + e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    // 读取并丢弃一个客户端帧（客户端帧总是带掩码），返回 opcode；连接已关闭时返回 -1
+    private static int readFrame(InputStream in) throws IOException {
+        int b0 = in.read();
+        int b1 = in.read();
+        if (b0 < 0 || b1 < 0) {
+            return -1;
+        }
+        long length = b1 & 0x7F;
+        if (length == 126) {
+            length = (in.read() << 8) | in.read();
+        } else if (length == 127) {
+            length = 0;
+            for (int i = 0; i < 8; i++) {
+                length = (length << 8) | in.read();
+            }
+        }
+        if ((b1 & 0x80) != 0) {
+            length += 4;
+        }
+        in.skipNBytes(length);
+        return b0 & 0x0F;
+    }
+
+    private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+        out.write(0x80 | opcode);
+        if (payload.length < 126) {
+            out.write(payload.length);
+        } else if (payload.length <= 0xFFFF) {
+            out.write(126);
+            out.write(payload.length >>> 8);
+            out.write(payload.length & 0xFF);
+        } else {
+            out.write(127);
+            long length = payload.length;
+            for (int i = 7; i >= 0; i--) {
+                out.write((int) (length >>> (8 * i)) & 0xFF);
+            }
+        }
+        out.write(payload);
+    }
+
+    // ================== 后端包装 ==================
+    // 关闭后端时顺带关闭替身服务
+    private static final class Backend implements CodeGenerationBackend {
+
+        private final MockSparkServer server;
+        private final SparkClient client;
+
+        Backend(MockSparkServer server, SparkClient client) {
+            this.server = server;
+            this.client = client;
+        }
+
+        @Override
+        public CompletableFuture<String> stream(List<ChatMessage> messages, GenerationOptions options,
+                                                Consumer<String> onDelta, long timeout, TimeUnit unit) {
+            return client.stream(messages, options, onDelta, timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            client.shutdown();
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // 退出时忽略
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 代码视图的文档模型：片段表（piece table）。原始文本和追加缓冲区都只增不改，
+// 文档由指向两者的片段序列组成；流式追加时若与上一片段在追加缓冲区中相邻则直接延长该片段。
+// 另外维护行首偏移表，按行取内容只需定位到对应片段，不必扫描全文。非线程安全
+final class PieceTable {
+
+    private record Piece(CharSequence buffer, int start, int length) {
+    }
+
+    private final StringBuilder added = new StringBuilder();
+    private final List<Piece> pieces = new ArrayList<>();
+    private int length;
+    private int[] lineStarts = new int[64];
+    private int lines = 1;
+
+    int length() {
+        return length;
+    }
+
+    // 行数 = 换行数 + 1（空文档也算一行）
+    int lineCount() {
+        return lines;
+    }
+
+    void clear() {
+        added.setLength(0);
+        pieces.clear();
+        length = 0;
+        lines = 1;
+    }
+
+    void setText(String text) {
+        clear();
+        if (!text.isEmpty()) {
+            pieces.add(new Piece(text, 0, text.length()));
+            length = text.length();
+            indexLines(text, 0, text.length(), 0);
+        }
+    }
+
+    void append(CharSequence text) {
+        insert(length, text);
+    }
+
+    void insert(int offset, CharSequence text) {
+        if (text.length() == 0) {
+            return;
+        }
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException(offset);
+        }
+        int start = added.length();
+        added.append(text);
+        Piece piece = new Piece(added, start, text.length());
+
+        if (offset == length) {
+            int last = pieces.size() - 1;
+            Piece tail = last >= 0 ? pieces.get(last) : null;
+            if (tail != null && tail.buffer() == added && tail.start() + tail.length() == start) {
+                pieces.set(last, new Piece(added, tail.start(), tail.length() + text.length()));
+            } else {
+                pieces.add(piece);
+            }
+            length += text.length();
+            indexLines(added, start, added.length(), offset);
+            return;
+        }
+
+        int index = 0;
+        int pieceStart = 0;
+        while (pieceStart + pieces.get(index).length() <= offset) {
+            pieceStart += pieces.get(index).length();
+            index++;
+        }
+        int split = offset - pieceStart;
+        if (split == 0) {
+            pieces.add(index, piece);
+        } else {
+            Piece target = pieces.get(index);
+            pieces.set(index, new Piece(target.buffer(), target.start(), split));
+            pieces.add(index + 1, piece);
+            pieces.add(index + 2, new Piece(target.buffer(), target.start() + split, target.length() - split));
+        }
+        length += text.length();
+
+        // 中间插入较少见：把插入点之后的行首整体后移，再登记新增的行首
+        int firstAfter = lineOf(offset) + 1;
+        int[] tail = Arrays.copyOfRange(lineStarts, firstAfter, lines);
+        lines = firstAfter;
+        indexLines(added, start, added.length(), offset);
+        for (int lineStart : tail) {
+            addLineStart(lineStart + text.length());
+        }
+    }
+
+    // 第 line 行的内容（不含换行符）
+    String line(int line) {
+        if (line < 0 || line >= lines) {
+            throw new IndexOutOfBoundsException(line);
+        }
+        int from = lineStarts[line];
+        int to = line + 1 < lines ? lineStarts[line + 1] - 1 : length;
+        return substring(from, to);
+    }
+
+    // 第 line 行行首在文档中的偏移
+    int lineStart(int line) {
+        return line <= 0 ? 0 : line >= lines ? length : lineStarts[line];
+    }
+
+    // 偏移所在的行
+    int lineOf(int offset) {
+        int index = Arrays.binarySearch(lineStarts, 0, lines, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    // 从 offset 到文档末尾的文本
+    String text(int offset) {
+        return substring(offset, length);
+    }
+
+    String text() {
+        return text(0);
+    }
+
+    private String substring(int from, int to) {
+        StringBuilder sb = new StringBuilder(to - from);
+        int pieceStart = 0;
+        for (Piece piece : pieces) {
+            int pieceEnd = pieceStart + piece.length();
+            if (pieceEnd > from && pieceStart < to) {
+                int begin = piece.start() + Math.max(0, from - pieceStart);
+                int end = piece.start() + Math.min(piece.length(), to - pieceStart);
+                sb.append(piece.buffer(), begin, end);
+            }
+            if (pieceEnd >= to) {
+                break;
+            }
+            pieceStart = pieceEnd;
+        }
+        return sb.toString();
+    }
+
+    // 登记 text[from, to) 中的换行；offset 为 text[from] 在文档中的位置
+    private void indexLines(CharSequence text, int from, int to, int offset) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                addLineStart(offset + (i - from) + 1);
+            }
+        }
+    }
+
+    private void addLineStart(int offset) {
+        if (lines == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+        }
+        lineStarts[lines++] = offset;
+    }
+}
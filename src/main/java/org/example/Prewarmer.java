@@ -0,0 +1,117 @@
+package org.example;
+
+import javax.crypto.Mac;
+import javax.net.ssl.SSLContext;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 启动预热：窗口显示后在一个最低优先级的后台线程上依次
+//   1. 加载并初始化生成链路用到的类（OkHttp、fastjson、帧解码、请求编码……）
+//   2. 初始化默认 TLS 上下文（读取 cacerts）和 HmacSHA256，并签一次鉴权 URL
+//   3. 用一段最小程序做一次真实编译，加载 javac 并打开 JDK/JavaFX 归档
+//   4. 反复运行格式化器、流式格式化器、语法着色和帧解码，让 JIT 提前编译热点
+// 用户在预热完成前点击生成也没有问题，只是首个请求仍会承担一部分冷启动开销。
+// 各阶段耗时记在 prewarm_* 计时器中；-Dprewarm=false 可关闭预热。
+// 直接运行 main 时同步执行全部阶段后退出，用作 AppCDS 归档的训练负载
+public final class Prewarmer {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("prewarm", "true"));
+    private static final int FORMATTER_ITERATIONS = Integer.getInteger("prewarm.formatterIterations", 200);
+
+    private static final List<String> CLASSES = List.of(
+            "okhttp3.OkHttpClient",
+            "okhttp3.Request",
+            "okhttp3.internal.ws.RealWebSocket",
+            "okhttp3.internal.connection.RealCall",
+            "okhttp3.internal.platform.Platform",
+            "okio.Buffer",
+            "com.alibaba.fastjson.JSON",
+            "com.alibaba.fastjson.JSONObject",
+            "org.example.FrameDecoder",
+            "org.example.RequestEncoder",
+            "org.example.AuthSigner",
+            "org.example.SparkException",
+            "org.example.StreamingJavaFormatter",
+            "org.example.SyntaxHighlighter",
+            "org.example.PieceTable"
+    );
+
+    private Prewarmer() {
+    }
+
+    // 记录从 JVM 启动到就绪（主窗口显示或批量任务开始）的耗时，并在后台开始预热
+    public static void start() {
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        Metrics.get().timer("startup").record(TimeUnit.MILLISECONDS.toNanos(uptimeMillis));
+        System.out.println("启动耗时: " + uptimeMillis + " ms");
+        if (!ENABLED) {
+            return;
+        }
+        Thread thread = new Thread(Prewarmer::run, "prewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public static void main(String[] args) {
+        run();
+    }
+
+    static void run() {
+        long start = System.nanoTime();
+        phase("prewarm_classes", Prewarmer::loadClasses);
+        phase("prewarm_tls", Prewarmer::initCrypto);
+        phase("prewarm_compiler", () -> CompilerService.getDefault().warmUp());
+        phase("prewarm_formatter", Prewarmer::warmFormatter);
+        Metrics.get().timer("prewarm_total").recordSince(start);
+        System.out.println("预热完成: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    // 单个阶段失败只影响首个请求的速度，记录后继续下一阶段
+    private static void phase(String timer, Runnable body) {
+        long start = System.nanoTime();
+        try {
+            body.run();
+        } catch (RuntimeException | LinkageError e) {
+            System.out.println("  预热阶段 " + timer + " 失败: " + e);
+        }
+        Metrics.get().timer(timer).recordSince(start);
+    }
+
+    private static void loadClasses() {
+        ClassLoader loader = Prewarmer.class.getClassLoader();
+        for (String name : CLASSES) {
+            try {
+                Class.forName(name, true, loader);
+            } catch (ClassNotFoundException e) {
+                // 依赖版本不同导致的类名变化不影响功能
+            }
+        }
+    }
+
+    private static void initCrypto() {
+        try {
+            SSLContext.getDefault().createSSLEngine();
+            Mac.getInstance("HmacSHA256");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        SparkClient.getAuthUrl("https://spark-api.xf-yun.com/v1/x1", "prewarm", "prewarm");
+    }
+
+    private static void warmFormatter() {
+        String code = MockSparkServer.SAMPLE_CODE;
+        List<String> frames = MockSparkServer.framesFor(code, 64);
+        for (int i = 0; i < FORMATTER_ITERATIONS; i++) {
+            JavaFormatter.format(code);
+            StreamingJavaFormatter streaming = new StreamingJavaFormatter(lines -> { });
+            for (String frame : frames) {
+                streaming.accept(SparkClient.parseFrame(frame).content());
+            }
+            streaming.finish();
+            SyntaxHighlighter.highlight(code, 0);
+            SparkClient.buildRequest(code);
+        }
+    }
+}
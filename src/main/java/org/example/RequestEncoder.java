@@ -0,0 +1,97 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 请求编码器：header、system 消息等不变的部分在构造时序列化好，每次请求只拼接 uid、模型参数和对话消息，
+// 消息内容直接按 JSON 规则转义写入预估好容量的缓冲区，不经过 JSONObject。可被多个线程并发调用
+final class RequestEncoder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String head;
+    private final String system;
+
+    private record Parameters(GenerationOptions options, String json) {
+    }
+
+    // 模型参数通常只有一两种（对冲时温度不同），缓存最近一次的序列化结果
+    private volatile Parameters parameters;
+
+    RequestEncoder(String appId, String systemPrompt) {
+        StringBuilder sb = new StringBuilder("{\"header\":{\"app_id\":");
+        appendString(sb, appId);
+        head = sb.append(",\"uid\":\"").toString();
+
+        sb.setLength(0);
+        sb.append(",\"payload\":{\"message\":{\"text\":[{\"role\":\"system\",\"content\":");
+        appendString(sb, systemPrompt);
+        system = sb.append('}').toString();
+    }
+
+    String encode(List<ChatMessage> messages, GenerationOptions options) {
+        int capacity = head.length() + system.length() + 128;
+        for (ChatMessage message : messages) {
+            capacity += message.content().length() + 40;
+        }
+
+        StringBuilder sb = new StringBuilder(capacity).append(head);
+        appendUid(sb);
+        sb.append("\"},\"parameter\":{\"chat\":").append(parameters(options)).append(system);
+        for (ChatMessage message : messages) {
+            sb.append(",{\"role\":");
+            appendString(sb, message.role());
+            sb.append(",\"content\":");
+            appendString(sb, message.content());
+            sb.append('}');
+        }
+        return sb.append("]}}}").toString();
+    }
+
+    private String parameters(GenerationOptions options) {
+        Parameters cached = parameters;
+        if (cached != null && cached.options().equals(options)) {
+            return cached.json();
+        }
+        StringBuilder sb = new StringBuilder("{\"domain\":");
+        appendString(sb, options.domain());
+        sb.append(",\"temperature\":").append(options.temperature())
+          .append(",\"max_tokens\":").append(options.maxTokens())
+          .append("}}");
+        String json = sb.toString();
+        parameters = new Parameters(options, json);
+        return json;
+    }
+
+    // 10 位随机十六进制 uid
+    private static void appendUid(StringBuilder sb) {
+        long bits = ThreadLocalRandom.current().nextLong();
+        for (int i = 0; i < 10; i++) {
+            sb.append(HEX[(int) (bits >>> (i * 4)) & 0xF]);
+        }
+    }
+
+    static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            sb.append(value, from, i);
+            from = i + 1;
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                case '\b' -> sb.append("\\b");
+                case '\f' -> sb.append("\\f");
+                default -> sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        sb.append(value, from, value.length()).append('"');
+    }
+}
@@ -0,0 +1,288 @@
+package org.example;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// 按内容寻址的结果缓存：键为最终 Prompt 与模型参数的 SHA-256，只缓存通过编译校验的格式化结果。
+// 内存层为按访问顺序淘汰的 LRU，条目带 TTL；配置了 cache.dir 时再加一层磁盘缓存，重启后仍可命中。
+// 磁盘层以 cache.diskMaxEntries 个文件、cache.diskMaxMegabytes MB 为上限：启动时和写入后超出上限时清理一遍，
+// 先删过期文件和残留的临时文件，再按最近访问时间从旧到新删到上限的 90%。
+// 两个时间各管一件事：是否过期只看文件内容里的 createdAt（写入时间，读取和清理用同一个判断）；
+// 文件的修改时间在每次命中时刷新，只用于清理时的 LRU 排序
+public class ResponseCache {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("cache.maxEntries", 256);
+    private static final long TTL_MILLIS = Long.getLong("cache.ttlMinutes", 60) * 60_000L;
+    private static final String DISK_DIR = System.getProperty("cache.dir");
+    private static final int DISK_MAX_ENTRIES = Integer.getInteger("cache.diskMaxEntries", 4096);
+    private static final long DISK_MAX_BYTES = Long.getLong("cache.diskMaxMegabytes", 64) << 20;
+    private static final long TMP_GRACE_MILLIS = 60_000;
+    // createdAt 写在文件开头，清理时只读这么多字节就能取到
+    private static final int DISK_HEAD_BYTES = 64;
+    private static final byte[] CREATED_AT_PREFIX = "{\"createdAt\":".getBytes(StandardCharsets.UTF_8);
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path diskDir;
+    private final int diskMaxEntries;
+    private final long diskMaxBytes;
+    private final Map<String, Entry> entries;
+    // 磁盘层的文件数和字节数：写入时累加（覆盖同一个键时会多算），每次清理按实际文件重算
+    private final Object diskLock = new Object();
+    private int diskEntries;
+    private long diskBytes;
+
+    private record Entry(GenerationResult result, long createdAt) {
+    }
+
+    private record DiskFile(Path path, long lastModified, long size) {
+    }
+
+    public ResponseCache() {
+        this(MAX_ENTRIES, TTL_MILLIS, DISK_DIR == null || DISK_DIR.isBlank() ? null : Paths.get(DISK_DIR));
+    }
+
+    public ResponseCache(int maxEntries, long ttlMillis, Path diskDir) {
+        this(maxEntries, ttlMillis, diskDir, DISK_MAX_ENTRIES, DISK_MAX_BYTES);
+    }
+
+    public ResponseCache(int maxEntries, long ttlMillis, Path diskDir, int diskMaxEntries, long diskMaxBytes) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.diskDir = diskDir;
+        this.diskMaxEntries = diskMaxEntries;
+        this.diskMaxBytes = diskMaxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxEntries;
+            }
+        };
+        if (diskDir != null) {
+            sweepDisk();
+        }
+    }
+
+    public static String key(String prompt, GenerationOptions options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            String params = "\n" + options.domain() + "\n" + options.temperature() + "\n" + options.maxTokens();
+            digest.update(params.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JDK 缺少 SHA-256", e);
+        }
+    }
+
+    // 未命中或已过期时返回 null
+    public GenerationResult get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt() < ttlMillis) {
+                    return entry.result();
+                }
+                entries.remove(key);
+            }
+        }
+
+        Entry entry = readDisk(key, now);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        return entry.result();
+    }
+
+    public void put(String key, GenerationResult result) {
+        if (!result.compiled()) {
+            return;
+        }
+        Entry entry = new Entry(result, System.currentTimeMillis());
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        writeDisk(key, entry);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // ================== 磁盘层 ==================
+    private Entry readDisk(String key, long now) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(key + ".json");
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            JSONObject json = JSON.parseObject(Files.readString(file, StandardCharsets.UTF_8));
+            long createdAt = json.getLongValue("createdAt");
+            if (now - createdAt >= ttlMillis) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            // 修改时间充当最近访问时间，清理时最近命中过的文件最后被删
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+            return new Entry(new GenerationResult(json.getString("code"), null), createdAt);
+        } catch (IOException | RuntimeException e) {
+            // 损坏或读不到的缓存文件按未命中处理
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Entry entry) {
+        if (diskDir == null) {
+            return;
+        }
+        JSONObject json = new JSONObject()
+                .fluentPut("createdAt", entry.createdAt())
+                .fluentPut("code", entry.result().code());
+        byte[] bytes = json.toJSONString().getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.createDirectories(diskDir);
+            // 先写临时文件再原子替换，避免并发读到半个文件
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, diskDir.resolve(key + ".json"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("  写入磁盘缓存失败: " + e.getMessage());
+            return;
+        }
+        boolean full;
+        synchronized (diskLock) {
+            diskEntries++;
+            diskBytes += bytes.length;
+            full = diskEntries > diskMaxEntries || diskBytes > diskMaxBytes;
+        }
+        if (full) {
+            sweepDisk();
+        }
+    }
+
+    // 读不出 createdAt 的文件视为已过期
+    private static long createdAt(Path file) throws IOException {
+        byte[] head;
+        try (var in = Files.newInputStream(file)) {
+            head = in.readNBytes(DISK_HEAD_BYTES);
+        }
+        if (startsWith(head, CREATED_AT_PREFIX)) {
+            long value = 0;
+            int digits = 0;
+            for (int i = CREATED_AT_PREFIX.length; i < head.length && head[i] >= '0' && head[i] <= '9'; i++) {
+                value = value * 10 + (head[i] - '0');
+                digits++;
+            }
+            if (digits > 0 && digits < 19) {
+                return value;
+            }
+        }
+        // 字段顺序不同的旧文件整体解析
+        try {
+            return JSON.parseObject(Files.readString(file, StandardCharsets.UTF_8)).getLongValue("createdAt");
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sweepDisk() {
+        synchronized (diskLock) {
+            long now = System.currentTimeMillis();
+            List<DiskFile> files = new ArrayList<>();
+            try (Stream<Path> list = Files.list(diskDir)) {
+                for (Path file : list.toList()) {
+                    String name = file.getFileName().toString();
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        long modified = attributes.lastModifiedTime().toMillis();
+                        if (name.endsWith(".tmp")) {
+                            // 其他线程可能正在写，只删崩溃后残留的旧临时文件
+                            if (now - modified > TMP_GRACE_MILLIS) {
+                                Files.deleteIfExists(file);
+                            }
+                        } else if (name.endsWith(".json")) {
+                            if (now - createdAt(file) >= ttlMillis) {
+                                Files.deleteIfExists(file);
+                            } else {
+                                files.add(new DiskFile(file, modified, attributes.size()));
+                            }
+                        }
+                    } catch (IOException e) {
+                        // 列出之后被并发删除或替换的文件直接跳过
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                diskEntries = 0;
+                diskBytes = 0;
+                return;
+            } catch (IOException e) {
+                System.out.println("  清理磁盘缓存失败: " + e.getMessage());
+                return;
+            }
+
+            int count = files.size();
+            long bytes = files.stream().mapToLong(DiskFile::size).sum();
+            if (count > diskMaxEntries || bytes > diskMaxBytes) {
+                // 删到上限的 90%，之后不必每次写入都触发清理
+                int targetCount = diskMaxEntries - diskMaxEntries / 10;
+                long targetBytes = diskMaxBytes - diskMaxBytes / 10;
+                files.sort(Comparator.comparingLong(DiskFile::lastModified));
+                for (DiskFile file : files) {
+                    if (count <= targetCount && bytes <= targetBytes) {
+                        break;
+                    }
+                    try {
+                        Files.deleteIfExists(file.path());
+                        count--;
+                        bytes -= file.size();
+                    } catch (IOException e) {
+                        // 删不掉的文件留到下一次清理
+                    }
+                }
+            }
+            diskEntries = count;
+            diskBytes = bytes;
+        }
+    }
+}
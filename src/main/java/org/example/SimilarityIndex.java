@@ -0,0 +1,296 @@
+package org.example;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+// 近似重复描述索引：精确缓存未命中时，查找之前生成过、描述只差几个字或标点的结果，直接复用而不调用模型。
+// 描述先归一化（NFKC、小写、只保留字母和数字），切成 3 字的 shingle 并哈希；
+// 用 64 个 MinHash 分成 16 组 × 4 行做 LSH 分桶，只对落在同一个桶里的候选按 shingle 集合计算精确的 Jaccard 相似度，
+// 达到 similar.threshold（默认 0.95）才算命中。条目数以 similar.maxEntries（默认 1024）为上限，按 LRU 淘汰。
+// 只差一两个字的描述含义可能完全不同（"五列"和"六列"、"为蓝色"和"不为蓝色"），
+// 所以描述中的数字、数词、否定词和颜色词必须逐个相同才允许复用。
+// 只收录通过编译的结果，模型参数不同的条目互不匹配。默认关闭，-Dsimilar.enabled=true 开启
+public class SimilarityIndex {
+
+    private static final boolean ENABLED = Boolean.getBoolean("similar.enabled");
+    private static final double THRESHOLD = Double.parseDouble(System.getProperty("similar.threshold", "0.95"));
+    private static final int MAX_ENTRIES = Integer.getInteger("similar.maxEntries", 1024);
+
+    private static final int SHINGLE = 3;
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final long[] SEEDS = new SplittableRandom(0x5EED_1DE4L).longs(BANDS * ROWS).toArray();
+
+    // 改变一个字就会改变含义的词：数词、否定词、颜色词
+    private static final String GUARD_CHARS = "零〇一二两三四五六七八九十百千万亿半双"
+            + "不没无非别勿未否莫"
+            + "红橙黄绿青蓝紫黑白灰粉棕金银";
+    private static final Set<String> GUARD_WORDS = Set.of(
+            "no", "not", "none", "never", "nor", "without", "cannot", "can't", "don't", "doesn't", "isn't",
+            "zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten",
+            "eleven", "twelve", "single", "double", "half",
+            "red", "orange", "yellow", "green", "cyan", "blue", "purple", "black", "white", "gray", "grey",
+            "pink", "brown", "gold", "silver");
+
+    public record Match(String description, double similarity, GenerationResult result) {
+    }
+
+    private record Key(String normalized, GenerationOptions options) {
+    }
+
+    private static final class Entry {
+        final Key key;
+        final String description;
+        final String guard;
+        final long[] shingles;
+        final long[] bands;
+        final GenerationResult result;
+        // 最近一次被哪次查询访问过，用来在多个桶之间去重
+        int visited;
+
+        Entry(Key key, String description, String guard, long[] shingles, long[] bands, GenerationResult result) {
+            this.key = key;
+            this.description = description;
+            this.guard = guard;
+            this.shingles = shingles;
+            this.bands = bands;
+            this.result = result;
+        }
+    }
+
+    private final double threshold;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries;
+    private final Map<Long, List<Entry>> buckets = new HashMap<>();
+    private int query;
+
+    // 未开启时阈值为无穷大，查找和收录都直接返回
+    public SimilarityIndex() {
+        this(ENABLED ? THRESHOLD : Double.POSITIVE_INFINITY, MAX_ENTRIES);
+    }
+
+    public SimilarityIndex(double threshold, int maxEntries) {
+        this.threshold = threshold;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // 没有足够相似的条目时返回 null
+    public synchronized Match find(String description, GenerationOptions options) {
+        if (threshold > 1 || entries.isEmpty()) {
+            return null;
+        }
+        String normalized = normalize(description);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        String guard = guard(description);
+        long[] shingles = shingles(normalized);
+        // Jaccard ≥ t 要求两个集合的大小之比不低于 t，不满足的候选不必逐个比较
+        int minSize = (int) Math.ceil(shingles.length * threshold);
+        int maxSize = (int) Math.floor(shingles.length / threshold);
+        int stamp = ++query;
+        Entry best = null;
+        double bestSimilarity = threshold;
+        for (long band : bands(shingles)) {
+            List<Entry> bucket = buckets.get(band);
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry candidate : bucket) {
+                if (candidate.visited == stamp) {
+                    continue;
+                }
+                candidate.visited = stamp;
+                int size = candidate.shingles.length;
+                if (size < minSize || size > maxSize || !candidate.key.options().equals(options)
+                        || !candidate.guard.equals(guard)) {
+                    continue;
+                }
+                double similarity = jaccard(shingles, candidate.shingles);
+                if (similarity >= bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        // 更新 LRU 顺序
+        entries.get(best.key);
+        return new Match(best.description, bestSimilarity, best.result);
+    }
+
+    // 生成完成后增量收录；同一描述的旧条目被替换
+    public synchronized void put(String description, GenerationOptions options, GenerationResult result) {
+        if (threshold > 1 || !result.compiled()) {
+            return;
+        }
+        String normalized = normalize(description);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        Key key = new Key(normalized, options);
+        long[] shingles = shingles(normalized);
+        Entry entry = new Entry(key, description, guard(description), shingles, bands(shingles), result);
+
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            unlink(previous);
+        }
+        for (long band : entry.bands) {
+            buckets.computeIfAbsent(band, b -> new ArrayList<>(2)).add(entry);
+        }
+        while (entries.size() > maxEntries) {
+            var eldest = entries.entrySet().iterator();
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            unlink(evicted);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void unlink(Entry entry) {
+        for (long band : entry.bands) {
+            List<Entry> bucket = buckets.get(band);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    buckets.remove(band);
+                }
+            }
+        }
+    }
+
+    // ================== 归一化与 shingle ==================
+    static String normalize(String description) {
+        String text = Normalizer.normalize(description, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    // 按出现顺序列出描述中的数字、数词、否定词和颜色词；两条描述的 guard 不同就不能互相复用
+    static String guard(String description) {
+        String text = Normalizer.normalize(description, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder guard = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int end = i + 1;
+            if (isAsciiDigit(c)) {
+                while (end < text.length() && (isAsciiDigit(text.charAt(end)) || text.charAt(end) == '.')) {
+                    end++;
+                }
+                guard.append(text, i, end).append(' ');
+            } else if (isAsciiLetter(c)) {
+                while (end < text.length() && (isAsciiLetter(text.charAt(end)) || text.charAt(end) == '\'')) {
+                    end++;
+                }
+                String word = text.substring(i, end);
+                if (GUARD_WORDS.contains(word)) {
+                    guard.append(word).append(' ');
+                }
+            } else if (GUARD_CHARS.indexOf(c) >= 0) {
+                guard.append(c).append(' ');
+            }
+            i = end;
+        }
+        return guard.toString();
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    // 排好序、去重后的 shingle 哈希（FNV-1a），短于 SHINGLE 的文本整体作为一个 shingle
+    private static long[] shingles(String text) {
+        int count = Math.max(1, text.length() - SHINGLE + 1);
+        int width = Math.min(SHINGLE, text.length());
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            long h = 0xCBF29CE484222325L;
+            for (int j = i; j < i + width; j++) {
+                h = (h ^ text.charAt(j)) * 0x100000001B3L;
+            }
+            hashes[i] = h;
+        }
+        Arrays.sort(hashes);
+        int distinct = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        return distinct == hashes.length ? hashes : Arrays.copyOf(hashes, distinct);
+    }
+
+    // MinHash 签名按组折叠成 LSH 桶号，组号也混入桶号，不同组互不冲突
+    private static long[] bands(long[] shingles) {
+        long[] minimum = new long[SEEDS.length];
+        Arrays.fill(minimum, Long.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = mix(shingle ^ SEEDS[i]);
+                if (h < minimum[i]) {
+                    minimum[i] = h;
+                }
+            }
+        }
+        long[] bands = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long h = band;
+            for (int row = 0; row < ROWS; row++) {
+                h = mix(h ^ minimum[band * ROWS + row]);
+            }
+            bands[band] = h;
+        }
+        return bands;
+    }
+
+    private static double jaccard(long[] a, long[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    // splitmix64 的混合函数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
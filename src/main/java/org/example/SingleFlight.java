@@ -0,0 +1,240 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// 相同请求合并：键相同（Prompt 与模型参数都相同）的并发生成只发起一次远程请求，之后到达的调用方挂到进行中的那一次上。
+// 流式输出广播给所有订阅者；晚到的订阅者先补发已经推送过的内容（修复或对冲替换会重置显示的代码，补发内容也随之重置）。
+// 单个订阅者取消只影响它自己，最后一个订阅者取消时才取消底层请求。
+// 回调和补发都先在锁内放进各订阅者自己的队列，出锁后再按顺序投递，监听器不会在持有任何锁时被调用
+final class SingleFlight {
+
+    interface Starter {
+        // listener 为广播给全部订阅者的监听器，control 被取消时底层生成应随之取消
+        CompletableFuture<GenerationResult> start(GenerationListener listener,
+                                                  CompletableFuture<GenerationResult> control);
+    }
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    // task 为调用方的 Future，被取消时退订；返回的 Future 在共享的生成结束时完成
+    CompletableFuture<GenerationResult> join(String key, GenerationListener listener,
+                                             CompletableFuture<?> task, Starter starter) {
+        CompletableFuture<GenerationResult> subscriber = new CompletableFuture<>();
+        boolean[] created = new boolean[1];
+        Subscription[] subscription = new Subscription[1];
+        Flight flight = flights.compute(key, (k, existing) -> {
+            if (existing != null && (subscription[0] = existing.subscribe(listener, subscriber)) != null) {
+                return existing;
+            }
+            Flight fresh = new Flight(k);
+            subscription[0] = fresh.subscribe(listener, subscriber);
+            created[0] = true;
+            return fresh;
+        });
+        // 在 compute 之外补发，监听器里再发起同键的请求也不会递归进入 ConcurrentHashMap
+        subscription[0].drain();
+        task.whenComplete((r, t) -> {
+            if (task.isCancelled()) {
+                flight.unsubscribe(subscriber);
+            }
+        });
+
+        if (!created[0]) {
+            Metrics.get().counter("singleflight_joined").increment();
+            return subscriber;
+        }
+        // 调用方在发起之前就取消了，也没有别人挂上来（否则 control 不会被取消），不必再发起远程请求
+        if (flight.control.isCancelled()) {
+            return subscriber;
+        }
+        CompletableFuture<GenerationResult> shared;
+        try {
+            shared = starter.start(flight, flight.control);
+        } catch (RuntimeException e) {
+            shared = CompletableFuture.failedFuture(e);
+        }
+        shared.whenComplete((result, error) -> {
+            // 先移除再通知订阅者，之后到达的请求直接走缓存
+            flights.remove(key, flight);
+            flight.complete(result, error);
+        });
+        return subscriber;
+    }
+
+    int inFlight() {
+        return flights.size();
+    }
+
+    // 单个订阅者的投递队列：多个线程同时投递时由其中一个按入队顺序执行，其余线程直接返回
+    private static final class Subscription {
+
+        private final GenerationListener listener;
+        private final CompletableFuture<GenerationResult> future;
+        private final ArrayDeque<Consumer<GenerationListener>> queue = new ArrayDeque<>();
+        private boolean draining;
+
+        Subscription(GenerationListener listener, CompletableFuture<GenerationResult> future) {
+            this.listener = listener;
+            this.future = future;
+        }
+
+        synchronized void enqueue(Consumer<GenerationListener> event) {
+            queue.add(event);
+        }
+
+        void drain() {
+            while (true) {
+                Consumer<GenerationListener> event;
+                synchronized (this) {
+                    // 已退订的订阅者不再收到回调
+                    if (future.isCancelled()) {
+                        queue.clear();
+                    }
+                    if (draining || queue.isEmpty()) {
+                        return;
+                    }
+                    event = queue.poll();
+                    draining = true;
+                }
+                try {
+                    event.accept(listener);
+                } finally {
+                    synchronized (this) {
+                        draining = false;
+                    }
+                }
+            }
+        }
+    }
+
+    private final class Flight implements GenerationListener {
+
+        private final String key;
+        private final CompletableFuture<GenerationResult> control = new CompletableFuture<>();
+        private final Map<CompletableFuture<GenerationResult>, Subscription> subscribers = new LinkedHashMap<>();
+        // 自上次重置以来推送过的内容，供晚到的订阅者补发
+        private final StringBuilder lines = new StringBuilder();
+        private int repairAttempt;
+        private String repairErrors;
+        private String replacedCode;
+        private boolean closed;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        // 已结束或已被取消时返回 null，调用方应另起一次生成；补发的内容已放进返回的队列，由调用方出锁后投递
+        synchronized Subscription subscribe(GenerationListener listener, CompletableFuture<GenerationResult> subscriber) {
+            if (closed) {
+                return null;
+            }
+            Subscription subscription = new Subscription(listener, subscriber);
+            if (replacedCode != null) {
+                String code = replacedCode;
+                subscription.enqueue(l -> l.onReplaced(code));
+            } else if (repairAttempt > 0) {
+                int attempt = repairAttempt;
+                String errors = repairErrors;
+                subscription.enqueue(l -> l.onRepair(attempt, errors));
+            }
+            if (!lines.isEmpty()) {
+                String replay = lines.toString();
+                subscription.enqueue(l -> l.onLines(replay));
+            }
+            subscribers.put(subscriber, subscription);
+            return subscription;
+        }
+
+        void unsubscribe(CompletableFuture<GenerationResult> subscriber) {
+            boolean last;
+            synchronized (this) {
+                if (subscribers.remove(subscriber) == null) {
+                    return;
+                }
+                last = subscribers.isEmpty() && !closed;
+                closed |= last;
+            }
+            subscriber.cancel(false);
+            if (last) {
+                flights.remove(key, this);
+                control.cancel(true);
+            }
+        }
+
+        // 结果也排在各订阅者的队列里，保证订阅者先收到全部代码再看到 Future 完成
+        void complete(GenerationResult result, Throwable error) {
+            List<Subscription> waiting;
+            synchronized (this) {
+                closed = true;
+                waiting = new ArrayList<>(subscribers.values());
+                subscribers.clear();
+                lines.setLength(0);
+                for (Subscription subscription : waiting) {
+                    CompletableFuture<GenerationResult> future = subscription.future;
+                    subscription.enqueue(error != null
+                            ? l -> future.completeExceptionally(error)
+                            : l -> future.complete(result));
+                }
+            }
+            for (Subscription subscription : waiting) {
+                subscription.drain();
+            }
+        }
+
+        @Override
+        public void onLines(String chunk) {
+            List<Subscription> targets;
+            synchronized (this) {
+                lines.append(chunk);
+                targets = enqueue(l -> l.onLines(chunk));
+            }
+            drain(targets);
+        }
+
+        @Override
+        public void onRepair(int attempt, String compileErrors) {
+            List<Subscription> targets;
+            synchronized (this) {
+                lines.setLength(0);
+                replacedCode = null;
+                repairAttempt = attempt;
+                repairErrors = compileErrors;
+                targets = enqueue(l -> l.onRepair(attempt, compileErrors));
+            }
+            drain(targets);
+        }
+
+        @Override
+        public void onReplaced(String code) {
+            List<Subscription> targets;
+            synchronized (this) {
+                lines.setLength(0);
+                replacedCode = code;
+                targets = enqueue(l -> l.onReplaced(code));
+            }
+            drain(targets);
+        }
+
+        // 调用方持有锁
+        private List<Subscription> enqueue(Consumer<GenerationListener> event) {
+            List<Subscription> targets = new ArrayList<>(subscribers.values());
+            for (Subscription subscription : targets) {
+                subscription.enqueue(event);
+            }
+            return targets;
+        }
+
+        private void drain(List<Subscription> targets) {
+            for (Subscription subscription : targets) {
+                subscription.drain();
+            }
+        }
+    }
+}
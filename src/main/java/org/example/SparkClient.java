@@ -1,239 +1,349 @@
 package org.example;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
 import okhttp3.*;
 import okhttp3.Protocol;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.tools.*;
-import java.io.*;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-public class SparkClient {
+public class SparkClient implements CodeGenerationBackend {
 
     // ===== 星火 API 配置 =====
     private static final String HOST_URL = "https://spark-api.xf-yun.com/v1/x1";
-    private static final String DOMAIN = "spark-x";
     private static final String APP_ID = "c40df7c9";
     private static final String API_SECRET = "YzI0N2E1YzhhYzhiZTM2OWQyOWY3MmNh";
     private static final String API_KEY = "4b20a2a894a67bcc7a419fb193350b11";
 
-    private static final StringBuilder responseBuilder = new StringBuilder();
+    // ===== HTTP 客户端配置（可通过 -D 系统属性覆盖）=====
+    private static final int MAX_REQUESTS = Integer.getInteger("spark.http.maxRequests", 64);
+    private static final int MAX_IDLE_CONNECTIONS = Integer.getInteger("spark.http.maxIdleConnections", 8);
+    private static final long KEEP_ALIVE_SECONDS = Long.getLong("spark.http.keepAliveSeconds", 300);
+    private static final long CONNECT_TIMEOUT_SECONDS = Long.getLong("spark.http.connectTimeoutSeconds", 10);
+    private static final long READ_TIMEOUT_SECONDS = Long.getLong("spark.http.readTimeoutSeconds", 60);
+    private static final long PING_INTERVAL_SECONDS = Long.getLong("spark.http.pingIntervalSeconds", 20);
+
+    // ===== 重试与熔断配置 =====
+    private static final int RETRY_MAX_ATTEMPTS = Integer.getInteger("spark.retry.maxAttempts", 3);
+    private static final long RETRY_BASE_DELAY_MILLIS = Long.getLong("spark.retry.baseDelayMs", 200);
+    private static final long RETRY_MAX_DELAY_MILLIS = Long.getLong("spark.retry.maxDelayMs", 5000);
+    private static final int BREAKER_FAILURE_THRESHOLD = Integer.getInteger("spark.breaker.failureThreshold", 5);
+    private static final long BREAKER_OPEN_SECONDS = Long.getLong("spark.breaker.openSeconds", 30);
+
+    // 每个 SparkClient 持有一个 OkHttpClient：连接池、Dispatcher 线程池和 TLS 会话缓存在多次生成之间复用
+    private final OkHttpClient httpClient;
+    private final RequestEncoder encoder;
+    private final AuthSigner signer;
+    private final CircuitBreaker breaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD,
+            TimeUnit.SECONDS.toMillis(BREAKER_OPEN_SECONDS));
+
+    public SparkClient() {
+        this(HOST_URL, APP_ID, API_KEY, API_SECRET);
+    }
+
+    // 指定服务地址和凭据，例如指向本地的 MockSparkServer
+    public SparkClient(String hostUrl, String appId, String apiKey, String apiSecret) {
+        this.encoder = new RequestEncoder(appId, SYSTEM_PROMPT);
+        this.signer = new AuthSigner(hostUrl, apiKey, apiSecret);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        // 所有请求都发往同一个星火域名，单主机上限与总上限保持一致
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS);
+
+        this.httpClient = new OkHttpClient.Builder()
+                .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS))
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    // 程序退出时调用：关闭 Dispatcher 线程池并释放空闲连接
+    @Override
+    public void shutdown() {
+        httpClient.dispatcher().cancelAll();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
 
     // ================== 对外入口 ==================
-    public static String generateCode(String prompt) {
-        responseBuilder.setLength(0);
+    public String generateCode(String prompt) {
+        return generateCode(prompt, delta -> { });
+    }
 
+    // 流式生成：每收到一段增量内容就回调 onDelta（在 OkHttp 线程上调用），结束后返回校验过的完整代码
+    public String generateCode(String prompt, Consumer<String> onDelta) {
         try {
-            String authUrl = getAuthUrl(HOST_URL, API_KEY, API_SECRET);
-            String wsUrl = authUrl.replace("http://", "ws://")
-                                  .replace("https://", "wss://");
+            String code = stripCodeFences(stream(prompt, onDelta, 30, TimeUnit.SECONDS).join());
 
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .protocols(Collections.singletonList(Protocol.HTTP_1_1))
-                    .build();
+            if (code.isEmpty()) {
+                return "AI未生成有效代码";
+            }
 
-            Request request = new Request.Builder()
-                    .url(wsUrl)
-                    .build();
+            // ⭐ 核心：生成后自动语法检查
+            return compileAndValidate(code);
 
-            CountDownLatch latch = new CountDownLatch(1);
+        } catch (CompletionException e) {
+            return "生成失败：" + e.getCause().getMessage();
+        } catch (Exception e) {
+            return "生成失败：" + e.getMessage();
+        }
+    }
 
-            client.newWebSocket(request, new WebSocketListener() {
+    // 异步流式生成，返回原始模型输出；每次调用拥有独立的响应缓冲和完成 Future，可安全并发。
+    // 取消返回的 Future 会立即关闭 WebSocket；timeout 是整个请求（含重试）的截止时间，
+    // 到期时断开连接并以已收到的部分内容完成，一点内容都没收到则以 TIMEOUT 失败。
+    // 可重试的错误在还没有向 onDelta 推送过内容时按带抖动的指数退避重试；熔断器断开期间直接失败。
+    public CompletableFuture<String> stream(String prompt, Consumer<String> onDelta, long timeout, TimeUnit unit) {
+        return stream(prompt, GenerationOptions.DEFAULT, onDelta, timeout, unit);
+    }
 
-                @Override
-                public void onOpen(WebSocket webSocket, Response response) {
-                    webSocket.send(buildRequest(prompt).toJSONString());
-                }
+    @Override
+    public CompletableFuture<String> stream(List<ChatMessage> messages, GenerationOptions options,
+                                            Consumer<String> onDelta, long timeout, TimeUnit unit) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        attempt(messages, options, onDelta, deadline, 1, result);
+        return result;
+    }
 
-                @Override
-                public void onMessage(WebSocket webSocket, String text) {
-                    try {
-                        JSONObject json = JSON.parseObject(text);
-                        JSONObject header = json.getJSONObject("header");
-
-                        if (header.getIntValue("code") != 0) {
-                            latch.countDown();
-                            return;
-                        }
-
-                        JSONArray texts = json
-                                .getJSONObject("payload")
-                                .getJSONObject("choices")
-                                .getJSONArray("text");
-
-                        if (texts != null && !texts.isEmpty()) {
-                            String content = texts.getJSONObject(0).getString("content");
-                            if (content != null) {
-                                responseBuilder.append(content);
-                            }
-                        }
-
-                        if (header.getIntValue("status") == 2) {
-                            latch.countDown();
-                            webSocket.close(1000, "done");
-                        }
-
-                    } catch (Exception e) {
-                        latch.countDown();
-                    }
-                }
+    public CircuitBreaker.State breakerState() {
+        return breaker.state();
+    }
 
-                @Override
-                public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-                    latch.countDown();
-                }
-            });
+    private void attempt(List<ChatMessage> messages, GenerationOptions options, Consumer<String> onDelta,
+                         long deadline, int attemptNo, CompletableFuture<String> result) {
+        if (result.isDone()) {
+            return;
+        }
+        if (!breaker.tryAcquire()) {
+            Metrics.get().counter("spark_errors{kind=\"CIRCUIT_OPEN\"}").increment();
+            result.completeExceptionally(new SparkException(SparkException.Kind.CIRCUIT_OPEN, 0,
+                    "星火服务暂不可用，" + breaker.retryAfterMillis() / 1000 + " 秒后重试", null));
+            return;
+        }
 
-            latch.await(30, java.util.concurrent.TimeUnit.SECONDS);
+        Generation generation = open(messages, options, onDelta, deadline - System.nanoTime());
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) {
+                generation.result.cancel(true);
+            }
+        });
 
-            String code = responseBuilder.toString()
-                    .replace("```java", "")
-                    .replace("```", "")
-                    .trim();
+        generation.result.whenComplete((content, error) -> {
+            if (error == null) {
+                breaker.onSuccess();
+                result.complete(content);
+                return;
+            }
+            if (generation.result.isCancelled()) {
+                breaker.onCancelled();
+                return;
+            }
+            SparkException failure = SparkException.fromFailure(
+                    error instanceof CompletionException && error.getCause() != null ? error.getCause() : error, 0);
+            Metrics.get().counter("spark_errors{kind=\"" + failure.kind() + "\"}").increment();
+            // 只有服务端或网络层面的问题计入熔断；请求本身被拒说明服务是通的
+            if (failure.retryable() || failure.kind() == SparkException.Kind.TIMEOUT) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
 
-            if (code.isEmpty()) {
-                return "AI未生成有效代码";
+            long backoffNanos = backoffNanos(attemptNo);
+            if (failure.retryable() && !generation.emitted && attemptNo < RETRY_MAX_ATTEMPTS
+                    && System.nanoTime() + backoffNanos < deadline) {
+                Metrics.get().counter("spark_retries{kind=\"" + failure.kind() + "\"}").increment();
+                CompletableFuture.runAsync(
+                        () -> attempt(messages, options, onDelta, deadline, attemptNo + 1, result),
+                        CompletableFuture.delayedExecutor(backoffNanos, TimeUnit.NANOSECONDS));
+            } else {
+                result.completeExceptionally(failure);
             }
+        });
+    }
 
-            // ⭐ 核心：生成后自动语法检查
-            return compileAndValidate(code);
+    // 打开一次 WebSocket 连接；remainingNanos 为距离截止时间的剩余时间
+    private Generation open(List<ChatMessage> messages, GenerationOptions options, Consumer<String> onDelta,
+                            long remainingNanos) {
+        Generation generation = new Generation(encoder, messages, options, onDelta);
+        Metrics.get().counter("spark_requests").increment();
+        try {
+            long signStart = System.nanoTime();
+            String authUrl = signer.sign();
+            Metrics.get().timer("spark_auth").recordSince(signStart);
+            String wsUrl = authUrl.replace("http://", "ws://")
+                                  .replace("https://", "wss://");
+
+            Request request = new Request.Builder()
+                    .url(wsUrl)
+                    .build();
 
+            generation.webSocket = httpClient.newWebSocket(request, generation);
+            CompletableFuture.runAsync(generation::timeout,
+                    CompletableFuture.delayedExecutor(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS));
         } catch (Exception e) {
-            return "生成失败：" + e.getMessage();
+            generation.result.completeExceptionally(e);
         }
+        return generation;
     }
 
-    // ================== 自动编译校验 ==================
-    private static String compileAndValidate(String code) {
-        try {
-            String className = extractClassName(code);
-            if (className == null) {
-                return "// 编译失败：未找到 class 定义\n\n" + code;
-            }
+    // 全抖动指数退避：在 [0, min(max, base * 2^(n-1))] 内均匀随机
+    private static long backoffNanos(int attemptNo) {
+        long cap = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_BASE_DELAY_MILLIS << Math.min(attemptNo - 1, 20));
+        return TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
 
-            File tempDir = new File(System.getProperty("java.io.tmpdir"), "ai_javafx_check");
-            tempDir.mkdirs();
+    // 去掉模型输出中的 Markdown 代码块标记
+    static String stripCodeFences(String content) {
+        return content.replace("```java", "")
+                      .replace("```", "")
+                      .trim();
+    }
 
-            File javaFile = new File(tempDir, className + ".java");
-            try (FileWriter writer = new FileWriter(javaFile, StandardCharsets.UTF_8)) {
-                writer.write(code);
-            }
+    // ================== 单次生成的状态 ==================
+    private static final class Generation extends WebSocketListener {
+
+        private final RequestEncoder encoder;
+        private final List<ChatMessage> messages;
+        private final GenerationOptions options;
+        private final Consumer<String> onDelta;
+        private final StringBuilder content = new StringBuilder();
+        // 同一连接上的帧依次到达，解码器和它的缓冲区在帧之间复用
+        private final FrameDecoder decoder = new FrameDecoder();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile WebSocket webSocket;
+        // 是否已向 onDelta 推送过内容；推送过就不能再重试，否则调用方会收到重复的内容
+        private volatile boolean emitted;
+        // 各阶段计时的起点：发起连接的时刻
+        private final long startNanos = System.nanoTime();
+
+        private Generation(RequestEncoder encoder, List<ChatMessage> messages, GenerationOptions options,
+                           Consumer<String> onDelta) {
+            this.encoder = encoder;
+            this.messages = messages;
+            this.options = options;
+            this.onDelta = onDelta;
+            // 调用方取消时立即断开连接，不再等待服务端
+            result.whenComplete((r, t) -> {
+                if (result.isCancelled() && webSocket != null) {
+                    webSocket.cancel();
+                }
+                if (t == null) {
+                    Metrics.get().timer("spark_stream").recordSince(startNanos);
+                }
+            });
+        }
 
-            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            if (compiler == null) {
-                return "// 编译失败：未检测到 JDK（不是 JRE）\n\n" + code;
+        private void timeout() {
+            if (result.isDone()) {
+                return;
             }
+            synchronized (content) {
+                if (content.length() > 0) {
+                    result.complete(content.toString());
+                } else {
+                    result.completeExceptionally(new SparkException(SparkException.Kind.TIMEOUT, 0,
+                            "星火响应超时", null));
+                }
+            }
+            webSocket.cancel();
+        }
 
-            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-            StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
-
-            Iterable<? extends JavaFileObject> units =
-                    fileManager.getJavaFileObjects(javaFile);
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            Metrics.get().timer("spark_connect").recordSince(startNanos);
+            webSocket.send(encoder.encode(messages, options));
+        }
 
-            JavaCompiler.CompilationTask task =
-                    compiler.getTask(null, fileManager, diagnostics, null, null, units);
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            try {
+                Frame frame = decoder.decode(text);
+                Metrics.get().counter("spark_received_chars").add(text.length());
+                if (frame.completionTokens() > 0) {
+                    Metrics.get().counter("spark_prompt_tokens").add(frame.promptTokens());
+                    Metrics.get().counter("spark_completion_tokens").add(frame.completionTokens());
+                }
 
-            boolean success = task.call();
-            fileManager.close();
+                if (frame.code() != 0) {
+                    result.completeExceptionally(SparkException.fromFrame(frame.code(), frame.message()));
+                    webSocket.close(1000, "error");
+                    return;
+                }
 
-            if (!success) {
-                StringBuilder error = new StringBuilder();
-                error.append("// ===== 编译失败 =====\n");
-                for (Diagnostic<?> d : diagnostics.getDiagnostics()) {
-                    error.append("行 ").append(d.getLineNumber())
-                         .append(" : ").append(d.getMessage(null)).append("\n");
+                String delta = frame.content();
+                if (delta != null && !delta.isEmpty()) {
+                    synchronized (content) {
+                        content.append(delta);
+                    }
+                    if (!emitted) {
+                        Metrics.get().timer("spark_first_token").recordSince(startNanos);
+                    }
+                    emitted = true;
+                    onDelta.accept(delta);
                 }
-                error.append("\n").append(code);
-                return error.toString();
-            }
 
-            return code;
+                if (frame.status() == 2) {
+                    synchronized (content) {
+                        result.complete(content.toString());
+                    }
+                    webSocket.close(1000, "done");
+                }
 
-        } catch (Exception e) {
-            return "// 编译异常：" + e.getMessage() + "\n\n" + code;
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                webSocket.cancel();
+            }
         }
-    }
 
-    // ================== 提取类名 ==================
-    private static String extractClassName(String code) {
-        for (String line : code.split("\n")) {
-            line = line.trim();
-            if (line.startsWith("public class ")) {
-                return line.split("\\s+")[2];
-            }
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            result.completeExceptionally(SparkException.fromFailure(t, response != null ? response.code() : 0));
         }
-        return null;
     }
 
-    // ================== 构建请求 ==================
-    private static JSONObject buildRequest(String prompt) {
-        JSONObject root = new JSONObject();
-
-        root.put("header", new JSONObject()
-                .fluentPut("app_id", APP_ID)
-                .fluentPut("uid", UUID.randomUUID().toString().substring(0, 10)));
+    // ================== 解析响应帧 ==================
+    // 一帧响应中用到的字段：header.code / header.message / header.status / payload.choices.text[0].content，
+    // 以及末帧 payload.usage.text 中的 token 用量（其余帧为 0）
+    record Frame(int code, String message, int status, String content, int promptTokens, int completionTokens) {
+    }
 
-        root.put("parameter", new JSONObject()
-                .fluentPut("chat", new JSONObject()
-                        .fluentPut("domain", DOMAIN)
-                        .fluentPut("temperature", 0.2)
-                        .fluentPut("max_tokens", 4096)));
+    static Frame parseFrame(String text) {
+        return new FrameDecoder().decode(text);
+    }
 
-        JSONArray text = new JSONArray();
+    // ================== 自动编译校验 ==================
+    static String compileAndValidate(String code) {
+        String errors = compileErrors(code);
+        return errors == null ? code : errors + "\n" + code;
+    }
 
-        text.add(new JSONObject()
-                .fluentPut("role", "system")
-                .fluentPut("content",
-                        "你是一个JavaFX专家。" +
-                        "只返回【完整、可直接编译运行】的JavaFX代码。" +
-                        "必须包含 import、class、main。" +
-                        "禁止解释、禁止伪代码。"));
+    // 编译通过返回 null，否则返回以注释开头的错误说明
+    static String compileErrors(String code) {
+        return CompilerService.getDefault().compile(code).errors();
+    }
 
-        text.add(new JSONObject()
-                .fluentPut("role", "user")
-                .fluentPut("content", prompt));
+    // ================== 构建请求 ==================
+    static final String SYSTEM_PROMPT = "你是一个JavaFX专家。" +
+            "只返回【完整、可直接编译运行】的JavaFX代码。" +
+            "必须包含 import、class、main。" +
+            "禁止解释、禁止伪代码。";
 
-        root.put("payload", new JSONObject()
-                .fluentPut("message", new JSONObject()
-                        .fluentPut("text", text)));
+    private static final RequestEncoder DEFAULT_ENCODER = new RequestEncoder(APP_ID, SYSTEM_PROMPT);
 
-        return root;
+    static String buildRequest(String prompt) {
+        return DEFAULT_ENCODER.encode(List.of(ChatMessage.user(prompt)), GenerationOptions.DEFAULT);
     }
 
     // ================== 鉴权 ==================
-    private static String getAuthUrl(String hostUrl, String apiKey, String apiSecret) throws Exception {
-        URL url = new URL(hostUrl);
-        SimpleDateFormat sdf = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
-        sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-        String date = sdf.format(new Date());
-
-        String sign = "host: " + url.getHost() + "\n" +
-                "date: " + date + "\n" +
-                "GET " + url.getPath() + " HTTP/1.1";
-
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-        String signature = Base64.getEncoder().encodeToString(mac.doFinal(sign.getBytes(StandardCharsets.UTF_8)));
-
-        String auth = String.format(
-                "api_key=\"%s\", algorithm=\"hmac-sha256\", headers=\"host date request-line\", signature=\"%s\"",
-                apiKey, signature);
-
-        return Objects.requireNonNull(HttpUrl.parse("https://" + url.getHost() + url.getPath()))
-                .newBuilder()
-                .addQueryParameter("authorization",
-                        Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8)))
-                .addQueryParameter("date", date)
-                .addQueryParameter("host", url.getHost())
-                .build()
-                .toString();
+    static String getAuthUrl(String hostUrl, String apiKey, String apiSecret) {
+        return new AuthSigner(hostUrl, apiKey, apiSecret).sign();
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+
+// 调用星火失败的分类：可重试的（网络、限流、服务端繁忙）和不可重试的（鉴权、请求被拒、超过截止时间）
+public class SparkException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        NETWORK(true), RATE_LIMITED(true), SERVER(true),
+        TIMEOUT(false), AUTH(false), REJECTED(false), CIRCUIT_OPEN(false);
+
+        final boolean retryable;
+
+        Kind(boolean retryable) {
+            this.retryable = retryable;
+        }
+    }
+
+    // 星火错误码：流控超限、服务繁忙、服务端网络错误视为暂时性错误
+    private static final Set<Integer> RATE_LIMIT_CODES = Set.of(10007, 11202, 11203);
+    private static final Set<Integer> SERVER_CODES = Set.of(10110, 10222);
+    private static final Set<Integer> AUTH_CODES = Set.of(11200, 11201);
+
+    private final Kind kind;
+    private final int code;
+
+    public SparkException(Kind kind, int code, String message, Throwable cause) {
+        super(message, cause);
+        this.kind = kind;
+        this.code = code;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    // 星火错误码或 HTTP 状态码，没有时为 0
+    public int code() {
+        return code;
+    }
+
+    public boolean retryable() {
+        return kind.retryable;
+    }
+
+    // 响应帧 header.code 非 0
+    static SparkException fromFrame(int code, String message) {
+        Kind kind = RATE_LIMIT_CODES.contains(code) ? Kind.RATE_LIMITED
+                : SERVER_CODES.contains(code) ? Kind.SERVER
+                : AUTH_CODES.contains(code) ? Kind.AUTH
+                : Kind.REJECTED;
+        return new SparkException(kind, code, "星火返回错误码 " + code + "：" + message, null);
+    }
+
+    // WebSocket 握手被拒（httpStatus > 0）或连接失败
+    static SparkException fromFailure(Throwable t, int httpStatus) {
+        if (t instanceof SparkException e) {
+            return e;
+        }
+        if (httpStatus > 0 && httpStatus != 101) {
+            Kind kind = httpStatus == 401 || httpStatus == 403 ? Kind.AUTH
+                    : httpStatus == 429 ? Kind.RATE_LIMITED
+                    : httpStatus >= 500 ? Kind.SERVER
+                    : Kind.REJECTED;
+            return new SparkException(kind, httpStatus, "星火握手失败，HTTP " + httpStatus, t);
+        }
+        if (t instanceof SocketTimeoutException) {
+            return new SparkException(Kind.NETWORK, 0, "连接星火超时：" + t.getMessage(), t);
+        }
+        if (t instanceof IOException) {
+            return new SparkException(Kind.NETWORK, 0, "连接星火失败：" + t.getMessage(), t);
+        }
+        // 解析响应等本地错误，重试没有意义
+        return new SparkException(Kind.REJECTED, 0, "处理星火响应失败：" + t, t);
+    }
+}
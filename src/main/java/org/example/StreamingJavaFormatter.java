@@ -0,0 +1,65 @@
+package org.example;
+
+import java.util.function.Consumer;
+
+// 流式格式化：边接收模型输出的增量边格式化，每凑齐一行就通过 onLines 交出去。
+// 词法状态跨分片保留：末尾不完整的 token（半个标识符、未闭合的字符串等）留在缓冲区等待下一片。
+// 增量来自网络线程，结束/超时来自流水线线程，因此所有入口都加锁。
+public class StreamingJavaFormatter {
+
+    private final Consumer<String> onLines;
+    private final JavaFormatter formatter = new JavaFormatter(1024);
+    private final JavaLexer lexer = new JavaLexer("");
+    private final StringBuilder pending = new StringBuilder();
+    private final StringBuilder formatted = new StringBuilder();
+    private boolean finished;
+
+    public StreamingJavaFormatter(Consumer<String> onLines) {
+        this.onLines = onLines;
+    }
+
+    public synchronized void accept(CharSequence chunk) {
+        if (finished) {
+            return;
+        }
+        pending.append(chunk);
+        drain(false);
+    }
+
+    // 处理剩余内容并返回完整的格式化结果；之后到达的增量会被忽略
+    public synchronized String finish() {
+        if (!finished) {
+            finished = true;
+            drain(true);
+            String tail = formatter.finish();
+            if (!tail.isEmpty()) {
+                formatted.append(tail);
+                onLines.accept(tail);
+            }
+            int end = formatted.length();
+            while (end > 0 && Character.isWhitespace(formatted.charAt(end - 1))) {
+                end--;
+            }
+            formatted.setLength(end);
+        }
+        return formatted.toString();
+    }
+
+    private void drain(boolean last) {
+        lexer.reset(pending, 0, pending.length());
+        while (lexer.next(last)) {
+            formatter.accept(lexer);
+        }
+        pending.delete(0, lexer.position());
+
+        // 只交出已经换行的部分，最后一行可能还会继续增长
+        StringBuilder out = formatter.output();
+        int end = out.lastIndexOf("\n");
+        if (end >= 0 && !last) {
+            String lines = out.substring(0, end + 1);
+            out.delete(0, end + 1);
+            formatted.append(lines);
+            onLines.accept(lines);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 代码视图的语法着色：用 JavaLexer 对一段文本做词法分析，按行输出着色区间。
+// 纯计算，不碰界面，在后台线程上运行；跨行的块注释和文本块按行切开，并记下哪些行以这类 token 的中间开头，
+// 增量着色时从不以 token 中间开头的行重新开始即可得到与全量一致的结果
+final class SyntaxHighlighter {
+
+    static final int KEYWORD = 0;
+    static final int STRING = 1;
+    static final int COMMENT = 2;
+    static final int NUMBER = 3;
+    static final int ANNOTATION = 4;
+
+    private static final int[] EMPTY = new int[0];
+
+    // spans.get(i) 为第 firstLine + i 行的着色区间，每三个 int 一组：行内起点、行内终点、样式；
+    // continued[i] 表示该行以跨行 token 的中间开头
+    record Result(int firstLine, List<int[]> spans, boolean[] continued) {
+    }
+
+    private SyntaxHighlighter() {
+    }
+
+    // text 为文档中从第 firstLine 行行首开始的全部文本
+    static Result highlight(String text, int firstLine) {
+        List<Integer> lineStarts = new ArrayList<>();
+        lineStarts.add(0);
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lineStarts.add(i + 1);
+            }
+        }
+        int lineCount = lineStarts.size();
+        IntList[] spans = new IntList[lineCount];
+        boolean[] continued = new boolean[lineCount];
+
+        JavaLexer lexer = new JavaLexer(text);
+        int line = 0;
+        boolean annotation = false;
+        while (lexer.next()) {
+            int style = styleOf(lexer, annotation);
+            annotation = lexer.kind == JavaLexer.Kind.OP && lexer.op == "@";
+            if (style < 0) {
+                continue;
+            }
+            while (line + 1 < lineCount && lineStarts.get(line + 1) <= lexer.start) {
+                line++;
+            }
+            // 跨行 token 逐行切开
+            int from = lexer.start;
+            int current = line;
+            while (true) {
+                int lineStart = lineStarts.get(current);
+                int lineEnd = current + 1 < lineCount ? lineStarts.get(current + 1) - 1 : text.length();
+                int to = Math.min(lexer.end, lineEnd);
+                if (to > from) {
+                    if (spans[current] == null) {
+                        spans[current] = new IntList();
+                    }
+                    spans[current].add(from - lineStart, to - lineStart, style);
+                }
+                if (lexer.end <= lineEnd || current + 1 >= lineCount) {
+                    break;
+                }
+                current++;
+                continued[current] = true;
+                from = lineStarts.get(current);
+            }
+        }
+
+        List<int[]> result = new ArrayList<>(lineCount);
+        for (IntList list : spans) {
+            result.add(list == null ? EMPTY : list.toArray());
+        }
+        return new Result(firstLine, result, continued);
+    }
+
+    private static int styleOf(JavaLexer lexer, boolean afterAt) {
+        return switch (lexer.kind) {
+            case WORD -> afterAt ? ANNOTATION : lexer.keyword != null ? KEYWORD : -1;
+            case STRING, CHAR, TEXT_BLOCK -> STRING;
+            case LINE_COMMENT, BLOCK_COMMENT -> COMMENT;
+            case NUMBER -> NUMBER;
+            case OP -> lexer.op == "@" ? ANNOTATION : -1;
+            default -> -1;
+        };
+    }
+
+    private static final class IntList {
+
+        private int[] values = new int[6];
+        private int size;
+
+        void add(int a, int b, int c) {
+            if (size + 3 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = a;
+            values[size++] = b;
+            values[size++] = c;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
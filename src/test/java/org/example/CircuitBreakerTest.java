@@ -0,0 +1,63 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    // 断开时间为 0：连续失败后下一次 tryAcquire 立即进入半开
+    private static CircuitBreaker openedBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 0);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+
+    @Test
+    void halfOpenAdmitsSingleProbe() {
+        CircuitBreaker breaker = openedBreaker();
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void cancelledProbeReleasesSlot() {
+        CircuitBreaker breaker = openedBreaker();
+        assertTrue(breaker.tryAcquire());
+        breaker.onCancelled();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire(), "试探被取消后下一个请求应被放行");
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void cancelledProbeIsNeitherSuccessNorFailure() {
+        CircuitBreaker breaker = openedBreaker();
+        assertTrue(breaker.tryAcquire());
+        breaker.onCancelled();
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void cancelWhileClosedKeepsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire());
+        breaker.onCancelled();
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+}
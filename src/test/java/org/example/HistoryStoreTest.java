@@ -0,0 +1,44 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void directoryIsLockedWhileOpen() throws IOException {
+        HistoryStore first = HistoryStore.open(dir);
+        first.append("登录界面", new GenerationResult("class A {}", null));
+        assertThrows(IOException.class, () -> HistoryStore.open(dir));
+
+        first.close();
+        try (HistoryStore second = HistoryStore.open(dir)) {
+            assertEquals(1, second.size());
+        }
+    }
+
+    @Test
+    void descriptionsMatchFullRecords() throws IOException {
+        try (HistoryStore store = HistoryStore.open(dir)) {
+            store.append("登录界面\n带记住密码", new GenerationResult("class A {}", null));
+            store.append("", new GenerationResult("class B {}", "B.java:1: 错误"));
+            store.append("注册界面", new GenerationResult("class C {}", null));
+
+            List<HistoryStore.Entry> entries = store.recent(10);
+            assertEquals(List.of("注册界面", "", "登录界面\n带记住密码"), store.descriptions(entries));
+            for (HistoryStore.Entry entry : entries) {
+                assertEquals(store.read(entry).description(), store.description(entry));
+            }
+        }
+    }
+}
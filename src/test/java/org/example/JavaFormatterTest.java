@@ -0,0 +1,57 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JavaFormatterTest {
+
+    // 把语句放进一个方法体里格式化，取回格式化后的那一行（去掉缩进）
+    private static String statement(String code) {
+        String formatted = JavaFormatter.format("class A {\nvoid f() {\n" + code + "\n}\n}");
+        String[] lines = formatted.split("\n");
+        return lines[2].strip();
+    }
+
+    // ================== 一元运算符 ==================
+    // 一元 +/- 与后面以 +/- 开头的 token 粘在一起会变成自增自减，改变程序含义
+    @Test
+    void unarySignKeepsSpaceBeforeSign() {
+        assertEquals("int x = - -y;", statement("int x = - -y;"));
+        assertEquals("int x = + +c;", statement("int x = + +c;"));
+        assertEquals("int x = - --y;", statement("int x = - --y;"));
+        assertEquals("int x = + ++c;", statement("int x = + ++c;"));
+    }
+
+    @Test
+    void unarySignStillGluesToOperand() {
+        assertEquals("int x = -y - -y;", statement("int x = - y - - y;"));
+        assertEquals("int x = -(y);", statement("int x = - ( y );"));
+        assertEquals("x = ++i + i++;", statement("x = ++ i + i ++;"));
+    }
+
+    // ================== 冒号 ==================
+    @Test
+    void labelHasNoSpaceBeforeColon() {
+        assertEquals("outer: while (true) {", statement("outer : while (true) {"));
+        String formatted = JavaFormatter.format("class A {\nvoid f() {\nouter:\nfor (int i : list) {\nbreak outer;\n}\n}\n}");
+        // 单独一行的标签之后，语句不按续行缩进
+        assertTrue(formatted.contains("        outer:\n        for (int i : list) {"), formatted);
+    }
+
+    @Test
+    void ternaryAndAssertKeepSpacesAroundColon() {
+        assertEquals("int r = b ? 1 : 2;", statement("int r = b ? 1 : 2;"));
+        assertEquals("assert x > 0 : \"msg\";", statement("assert x > 0 : \"msg\";"));
+    }
+
+    // ================== 泛型 ==================
+    @Test
+    void explicitTypeArgumentsGlueToMethodName() {
+        assertEquals("List<Integer> l = List.<Integer>of(1);", statement("List<Integer> l = List.<Integer> of(1);"));
+        assertEquals("var m = Collections.<String, List<Integer>>emptyMap();",
+                statement("var m = Collections.<String, List<Integer>> emptyMap();"));
+        assertEquals("this.<T>foo();", statement("this.<T>foo();"));
+    }
+}
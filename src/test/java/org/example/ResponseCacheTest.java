@@ -0,0 +1,106 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCacheTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @TempDir
+    Path dir;
+
+    private static GenerationResult result(int i) {
+        return new GenerationResult("class C" + i + " {}", null);
+    }
+
+    private long files() throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.filter(f -> f.toString().endsWith(".json")).count();
+        }
+    }
+
+    @Test
+    void diskTierStaysWithinEntryCap() throws IOException {
+        ResponseCache cache = new ResponseCache(4, HOUR, dir, 10, Long.MAX_VALUE);
+        for (int i = 0; i < 50; i++) {
+            cache.put("key" + i, result(i));
+        }
+        assertTrue(files() <= 10, "磁盘文件数应不超过上限: " + files());
+        // 最近写入的还在磁盘上，重启后仍能命中
+        assertNotNull(new ResponseCache(4, HOUR, dir, 10, Long.MAX_VALUE).get("key49"));
+    }
+
+    @Test
+    void diskTierStaysWithinByteCap() throws IOException {
+        ResponseCache cache = new ResponseCache(4, HOUR, dir, Integer.MAX_VALUE, 2048);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, result(i));
+        }
+        long bytes;
+        try (Stream<Path> list = Files.list(dir)) {
+            bytes = list.mapToLong(f -> f.toFile().length()).sum();
+        }
+        assertTrue(bytes <= 2048, "磁盘占用应不超过上限: " + bytes);
+    }
+
+    @Test
+    void leastRecentlyUsedFilesAreEvictedFirst() throws IOException {
+        ResponseCache cache = new ResponseCache(1, HOUR, dir, 10, Long.MAX_VALUE);
+        long old = System.currentTimeMillis() - 10 * 60_000L;
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, result(i));
+            Files.setLastModifiedTime(dir.resolve("key" + i + ".json"), FileTime.fromMillis(old + i * 1000L));
+        }
+        // 内存层只有一条，key0 从磁盘读出并刷新访问时间
+        assertNotNull(cache.get("key0"));
+        cache.put("key10", result(10));
+
+        assertTrue(Files.exists(dir.resolve("key0.json")));
+        assertFalse(Files.exists(dir.resolve("key1.json")));
+        assertEquals(9, files());
+    }
+
+    @Test
+    void expiredAndStaleTempFilesAreSweptAtStartup() throws IOException {
+        new ResponseCache(4, HOUR, dir, 10, Long.MAX_VALUE).put("fresh", result(0));
+        long twoHoursAgo = System.currentTimeMillis() - 2 * HOUR;
+        Files.writeString(dir.resolve("expired.json"), "{\"createdAt\":" + twoHoursAgo + ",\"code\":\"class B {}\"}");
+        Path tmp = Files.writeString(dir.resolve("crashed123.tmp"), "{");
+        Files.setLastModifiedTime(tmp, FileTime.fromMillis(twoHoursAgo));
+
+        ResponseCache cache = new ResponseCache(4, HOUR, dir, 10, Long.MAX_VALUE);
+        assertFalse(Files.exists(dir.resolve("expired.json")));
+        assertFalse(Files.exists(tmp));
+        assertNotNull(cache.get("fresh"));
+        assertNull(cache.get("expired"));
+    }
+
+    // 过期只看写入时间：最近被读过（修改时间新）的旧条目照样过期，很久没读过的新条目不算过期
+    @Test
+    void sweepExpiresByCreatedAtNotAccessTime() throws IOException {
+        long twoHoursAgo = System.currentTimeMillis() - 2 * HOUR;
+        Files.writeString(dir.resolve("old.json"), "{\"createdAt\":" + twoHoursAgo + ",\"code\":\"class A {}\"}");
+        new ResponseCache(4, HOUR, dir, 10, Long.MAX_VALUE).put("idle", result(1));
+        Files.setLastModifiedTime(dir.resolve("idle.json"), FileTime.fromMillis(twoHoursAgo));
+        // 字段顺序不同的旧格式文件也按 createdAt 判断
+        Files.writeString(dir.resolve("legacy.json"), "{\"code\":\"class C {}\",\"createdAt\":" + twoHoursAgo + "}");
+
+        new ResponseCache(4, HOUR, dir, 10, Long.MAX_VALUE);
+        assertFalse(Files.exists(dir.resolve("old.json")));
+        assertFalse(Files.exists(dir.resolve("legacy.json")));
+        assertTrue(Files.exists(dir.resolve("idle.json")));
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SimilarityIndexTest {
+
+    private static final String LOGIN = "一个包含用户名输入框、密码输入框和登录按钮的登录界面，按钮为蓝色，"
+            + "窗口标题为用户登录，输入框左侧有对应的标签文字，界面整体居中显示";
+    private static final GenerationResult RESULT = new GenerationResult("public class Login {}", null);
+
+    private static SimilarityIndex indexWith(double threshold, String description) {
+        SimilarityIndex index = new SimilarityIndex(threshold, 16);
+        index.put(description, GenerationOptions.DEFAULT, RESULT);
+        return index;
+    }
+
+    // ================== 命中 ==================
+    @Test
+    void punctuationWidthAndCaseAreIgnored() {
+        SimilarityIndex index = indexWith(0.95, "Login 界面，带 OK 按钮和 Cancel 按钮");
+        SimilarityIndex.Match match = index.find("login界面,带ok按钮和cancel按钮。", GenerationOptions.DEFAULT);
+        assertNotNull(match);
+        assertEquals(1.0, match.similarity());
+        assertSame(RESULT, match.result());
+        assertEquals("Login 界面，带 OK 按钮和 Cancel 按钮", match.description());
+    }
+
+    @Test
+    void longDescriptionWithExtraParticleIsReused() {
+        SimilarityIndex index = indexWith(0.95, LOGIN);
+        SimilarityIndex.Match match = index.find(LOGIN + "吧", GenerationOptions.DEFAULT);
+        assertNotNull(match);
+        assertSame(RESULT, match.result());
+    }
+
+    // ================== 不命中 ==================
+    // 以下几组在较低的阈值下 shingle 相似度都足够，只靠数字、数词、否定词和颜色词拦下
+    @Test
+    void differentColourIsRejected() {
+        SimilarityIndex index = indexWith(0.8, "一个包含用户名、密码输入框和登录按钮的登录界面，按钮为蓝色");
+        assertNull(index.find("一个包含用户名、密码输入框和登录按钮的登录界面，按钮为红色", GenerationOptions.DEFAULT));
+    }
+
+    @Test
+    void negationIsRejected() {
+        SimilarityIndex index = indexWith(0.8, "一个包含用户名、密码输入框和登录按钮的登录界面，按钮为蓝色");
+        assertNull(index.find("一个包含用户名、密码输入框和登录按钮的登录界面，按钮不为蓝色", GenerationOptions.DEFAULT));
+    }
+
+    @Test
+    void differentChineseNumeralIsRejected() {
+        SimilarityIndex index = indexWith(0.8, "一个五列的表格，显示学生的姓名、学号、班级、成绩和排名，表头加粗");
+        assertNull(index.find("一个六列的表格，显示学生的姓名、学号、班级、成绩和排名，表头加粗", GenerationOptions.DEFAULT));
+    }
+
+    @Test
+    void differentDigitsAreRejected() {
+        SimilarityIndex index = indexWith(0.8, "一个 3 行 4 列的按钮网格，每个按钮显示序号，点击时在状态栏显示序号");
+        assertNull(index.find("一个 4 行 3 列的按钮网格，每个按钮显示序号，点击时在状态栏显示序号", GenerationOptions.DEFAULT));
+        assertNull(index.find("一个 3 行 5 列的按钮网格，每个按钮显示序号，点击时在状态栏显示序号", GenerationOptions.DEFAULT));
+    }
+
+    @Test
+    void englishNegationIsRejected() {
+        SimilarityIndex index = indexWith(0.8, "A settings dialog with a dark theme toggle and a close button");
+        assertNull(index.find("A settings dialog with a dark theme toggle and not a close button", GenerationOptions.DEFAULT));
+    }
+
+    @Test
+    void smallEditBelowDefaultThresholdIsRejected() {
+        SimilarityIndex index = indexWith(0.95, LOGIN);
+        assertNull(index.find(LOGIN.replace("界面整体", "整个界面整体"), GenerationOptions.DEFAULT));
+    }
+
+    @Test
+    void differentOptionsAreRejected() {
+        SimilarityIndex index = indexWith(0.95, LOGIN);
+        assertNull(index.find(LOGIN, new GenerationOptions("spark-x", 0.9, 4096)));
+    }
+
+    @Test
+    void disabledByDefault() {
+        SimilarityIndex index = new SimilarityIndex();
+        index.put(LOGIN, GenerationOptions.DEFAULT, RESULT);
+        assertEquals(0, index.size());
+        assertNull(index.find(LOGIN, GenerationOptions.DEFAULT));
+    }
+}
@@ -0,0 +1,114 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private static final GenerationResult RESULT = new GenerationResult("class A {}", null);
+
+    // 记录底层生成拿到的广播监听器，由测试手动推送和完成
+    private static final class FakeStarter implements SingleFlight.Starter {
+        final AtomicInteger starts = new AtomicInteger();
+        final CompletableFuture<GenerationResult> shared = new CompletableFuture<>();
+        GenerationListener broadcast;
+
+        @Override
+        public CompletableFuture<GenerationResult> start(GenerationListener listener,
+                                                         CompletableFuture<GenerationResult> control) {
+            starts.incrementAndGet();
+            broadcast = listener;
+            return shared;
+        }
+    }
+
+    @Test
+    void lateJoinerGetsReplayThenLiveLines() {
+        SingleFlight flights = new SingleFlight();
+        FakeStarter starter = new FakeStarter();
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+
+        CompletableFuture<GenerationResult> a = flights.join("k", first::add, new CompletableFuture<>(), starter);
+        starter.broadcast.onLines("line1\n");
+        CompletableFuture<GenerationResult> b = flights.join("k", second::add, new CompletableFuture<>(), starter);
+        starter.broadcast.onLines("line2\n");
+        starter.shared.complete(RESULT);
+
+        assertEquals(1, starter.starts.get());
+        assertEquals(List.of("line1\n", "line2\n"), first);
+        assertEquals(List.of("line1\n", "line2\n"), second);
+        assertSame(RESULT, a.join());
+        assertSame(RESULT, b.join());
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void replayDoesNotHoldMapLock() throws Exception {
+        SingleFlight flights = new SingleFlight();
+        FakeStarter starter = new FakeStarter();
+        flights.join("k", lines -> { }, new CompletableFuture<>(), starter);
+        starter.broadcast.onLines("line1\n");
+
+        // 补发时另一个线程挂到同一个键上；补发若在 ConcurrentHashMap.compute 之内执行，该线程会被桶锁挡住
+        List<Boolean> joined = new ArrayList<>();
+        flights.join("k", lines -> {
+            CompletableFuture<Boolean> other = CompletableFuture.supplyAsync(() -> {
+                flights.join("k", l -> { }, new CompletableFuture<>(), starter);
+                return true;
+            });
+            try {
+                joined.add(other.get(2, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                joined.add(false);
+            }
+        }, new CompletableFuture<>(), starter);
+        starter.shared.complete(RESULT);
+
+        assertEquals(List.of(true), joined);
+        assertEquals(1, starter.starts.get());
+    }
+
+    @Test
+    void cancelledBeforeStartDoesNotStart() {
+        SingleFlight flights = new SingleFlight();
+        FakeStarter starter = new FakeStarter();
+        CompletableFuture<GenerationResult> task = new CompletableFuture<>();
+        task.cancel(false);
+
+        CompletableFuture<GenerationResult> subscriber = flights.join("k", lines -> { }, task, starter);
+
+        assertEquals(0, starter.starts.get());
+        assertTrue(subscriber.isCancelled());
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void cancellingOneSubscriberKeepsTheOthers() {
+        SingleFlight flights = new SingleFlight();
+        FakeStarter starter = new FakeStarter();
+        CompletableFuture<GenerationResult> firstTask = new CompletableFuture<>();
+        List<String> second = new ArrayList<>();
+
+        CompletableFuture<GenerationResult> a = flights.join("k", lines -> { }, firstTask, starter);
+        CompletableFuture<GenerationResult> b = flights.join("k", second::add, new CompletableFuture<>(), starter);
+        firstTask.cancel(false);
+        starter.broadcast.onLines("line1\n");
+        starter.shared.complete(RESULT);
+
+        assertTrue(a.isCancelled());
+        assertFalse(b.isCancelled());
+        assertEquals(List.of("line1\n"), second);
+        assertSame(RESULT, b.join());
+    }
+}